@@ -0,0 +1,15 @@
+package com.sky.constant;
+
+/**
+ * 缓存名称常量
+ */
+public class CacheConstant {
+
+    //分类下起售中的套餐，key为分类id
+    //旧版本的setmealCache使用JDK序列化缓存Result，改用JSON序列化后换用新的缓存名，避免读到旧数据反序列化失败
+    //旧的setmealCache::*没有设置过期时间，上线后执行 redis-cli --scan --pattern 'setmealCache::*' | xargs redis-cli unlink 清理
+    public static final String SETMEAL_CACHE = "setmealListCache";
+
+    //套餐包含的菜品，key为套餐id
+    public static final String SETMEAL_DISH_CACHE = "setmealDishCache";
+}
@@ -23,7 +23,9 @@ public class MessageConstant {
     public static final String DISH_BE_RELATED_BY_SETMEAL = "当前菜品关联了套餐,不能删除";
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
+    public static final String ORDER_REFUND_NOT_FOUND = "订单没有退款申请";
     public static final String ALREADY_EXISTS = "已存在" ;
     public static final String EMPLOYEE_ADD_SUCCESS = "员工新增成功";
     public static final String ADDRESS_BOOK_NOT_FOUND = "地址不存在";
+    public static final String DISH_STOCK_NOT_ENOUGH = "菜品库存不足";
 }
@@ -0,0 +1,24 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 调用外部接口的HTTP连接池配置，时间单位均为毫秒
+ */
+@Component
+@ConfigurationProperties(prefix = "sky.http")
+@Data
+public class HttpClientProperties {
+
+    private int maxTotal = 200; //连接池最大连接数
+    private int maxPerRoute = 50; //每个目标主机的最大连接数
+    private int connectTimeout = 3000; //建立连接的超时时间
+    private int connectionRequestTimeout = 1000; //从连接池获取连接的超时时间
+    private int socketTimeout = 5000; //等待响应数据的超时时间
+    private long keepAlive = 30000; //服务端没有返回Keep-Alive时，连接保持的时间
+    private long maxIdleTime = 60000; //空闲超过该时间的连接被关闭
+    private int validateAfterInactivity = 2000; //连接空闲超过该时间后，复用前先检查是否可用
+
+}
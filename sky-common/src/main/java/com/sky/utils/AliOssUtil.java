@@ -1,5 +1,6 @@
 package com.sky.utils;
 
+import com.aliyun.oss.ClientBuilderConfiguration;
 import com.aliyun.oss.ClientException;
 import com.aliyun.oss.OSS;
 import com.aliyun.oss.OSSClientBuilder;
@@ -9,7 +10,6 @@ import com.aliyun.oss.model.ObjectMetadata;
 import com.aliyun.oss.model.PutObjectRequest;
 import com.aliyun.oss.model.ResponseHeaderOverrides;
 import com.aliyun.oss.model.GeneratePresignedUrlRequest;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import java.io.ByteArrayInputStream;
@@ -17,7 +17,6 @@ import java.net.URL;
 import java.util.Date;
 
 @Data
-@AllArgsConstructor
 @Slf4j
 public class AliOssUtil {
 
@@ -26,6 +25,19 @@ public class AliOssUtil {
     private String accessKeySecret;
     private String bucketName;
 
+    //OSSClient内部带有连接池，所有上传共用一个实例
+    private final ClientBuilderConfiguration clientConfiguration;
+    private volatile OSS client;
+
+    public AliOssUtil(String endpoint, String accessKeyId, String accessKeySecret, String bucketName,
+                      ClientBuilderConfiguration clientConfiguration) {
+        this.endpoint = endpoint;
+        this.accessKeyId = accessKeyId;
+        this.accessKeySecret = accessKeySecret;
+        this.bucketName = bucketName;
+        this.clientConfiguration = clientConfiguration;
+    }
+
     /**
      * 文件上传
      *
@@ -34,9 +46,8 @@ public class AliOssUtil {
      * @return
      */
     public String upload(byte[] bytes, String objectName) {
-        // 创建OSSClient实例。
-        OSS ossClient = new OSSClientBuilder().build(endpoint, accessKeyId, accessKeySecret);
-        
+        OSS ossClient = getClient();
+
         // 标记上传是否成功
         boolean uploadSuccess = false;
 
@@ -81,10 +92,6 @@ public class AliOssUtil {
         } catch (ClientException ce) {
             log.error("OSS客户端异常，上传文件失败: ErrorMessage:{}", ce.getMessage());
             throw new RuntimeException("OSS客户端异常，上传文件失败", ce);
-        } finally {
-            if (ossClient != null) {
-                ossClient.shutdown();
-            }
         }
 
         // 只有上传成功才生成并返回URL
@@ -119,8 +126,8 @@ public class AliOssUtil {
      * @return
      */
     public String generatePreviewUrl(String objectName) {
-        OSS ossClient = new OSSClientBuilder().build(endpoint, accessKeyId, accessKeySecret);
-        
+        OSS ossClient = getClient();
+
         try {
             // 设置URL过期时间为1小时
             Date expiration = new Date(System.currentTimeMillis() + 3600 * 1000);
@@ -155,10 +162,30 @@ public class AliOssUtil {
         } catch (Exception e) {
             log.error("生成预览URL失败: {}", e.getMessage());
             throw new RuntimeException("生成预览URL失败", e);
-        } finally {
-            if (ossClient != null) {
-                ossClient.shutdown();
+        }
+    }
+
+    /**
+     * 获取OSSClient实例，第一次使用时创建
+     * @return
+     */
+    private OSS getClient() {
+        if (client == null) {
+            synchronized (this) {
+                if (client == null) {
+                    client = new OSSClientBuilder().build(endpoint, accessKeyId, accessKeySecret, clientConfiguration);
+                }
             }
         }
+        return client;
+    }
+
+    /**
+     * 关闭OSSClient，释放连接池
+     */
+    public void shutdown() {
+        if (client != null) {
+            client.shutdown();
+        }
     }
 }
@@ -2,24 +2,30 @@ package com.sky.utils;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.HttpClientProperties;
 import com.sky.properties.WeChatProperties;
 import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
 import com.wechat.pay.contrib.apache.httpclient.util.PemUtil;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.security.PrivateKey;
 import java.security.Signature;
@@ -28,6 +34,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -46,8 +55,24 @@ public class WeChatPayUtil {
     @Autowired
     private WeChatProperties weChatProperties;
 
+    @Autowired
+    private HttpClientProperties httpClientProperties;
+
+    @Autowired
+    @Qualifier("weChatPayConnectionManager")
+    private HttpClientConnectionManager weChatPayConnectionManager;
+
+    @Autowired
+    private RequestConfig httpRequestConfig;
+
+    @Autowired
+    private ConnectionKeepAliveStrategy httpKeepAliveStrategy;
+
+    private volatile CloseableHttpClient client;
+
     /**
      * 获取调用微信接口的客户端工具对象
+     * 客户端只创建一次，使用单独的连接池，请求之间复用连接
      *
      * @return
      */
@@ -58,25 +83,49 @@ public class WeChatPayUtil {
             return null;
         }
 
-        PrivateKey merchantPrivateKey = null;
-        try {
+        if (client == null) {
+            synchronized (this) {
+                if (client == null) {
+                    client = createClient();
+                }
+            }
+        }
+        return client;
+    }
+
+    private CloseableHttpClient createClient() {
+        try (FileInputStream privateKeyInput = new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath()));
+             FileInputStream certificateInput = new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath()))) {
             //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
-            merchantPrivateKey = PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath())));
+            PrivateKey merchantPrivateKey = PemUtil.loadPrivateKey(privateKeyInput);
             //加载平台证书文件
-            X509Certificate x509Certificate = PemUtil.loadCertificate(new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath())));
+            X509Certificate x509Certificate = PemUtil.loadCertificate(certificateInput);
             //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的"定时更新平台证书功能"，而不需要关心平台证书的来龙去脉
             List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
 
-            WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
-                    .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
-                    .withWechatPay(wechatPayCertificates);
-
             // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
-            CloseableHttpClient httpClient = builder.build();
-            return httpClient;
+            return WechatPayHttpClientBuilder.create()
+                    .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
+                    .withWechatPay(wechatPayCertificates)
+                    .setConnectionManager(weChatPayConnectionManager)
+                    .setDefaultRequestConfig(httpRequestConfig)
+                    .setKeepAliveStrategy(httpKeepAliveStrategy)
+                    .evictExpiredConnections()
+                    .evictIdleConnections(httpClientProperties.getMaxIdleTime(), TimeUnit.MILLISECONDS)
+                    .build();
         } catch (FileNotFoundException e) {
             log.error("微信支付证书文件不存在: {}", e.getMessage());
             return null;
+        } catch (IOException e) {
+            log.error("读取微信支付证书文件失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        if (client != null) {
+            client.close();
         }
     }
 
@@ -140,7 +189,7 @@ public class WeChatPayUtil {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
         } finally {
-            httpClient.close();
+            //只关闭响应，连接归还到连接池
             response.close();
         }
     }
@@ -176,7 +225,7 @@ public class WeChatPayUtil {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
         } finally {
-            httpClient.close();
+            //只关闭响应，连接归还到连接池
             response.close();
         }
     }
@@ -0,0 +1,16 @@
+package com.sky.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+@Data
+public class DishStockDTO implements Serializable {
+
+    //菜品id
+    private Long dishId;
+
+    //当日总库存
+    private Integer total;
+
+}
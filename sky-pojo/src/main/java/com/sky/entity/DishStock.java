@@ -0,0 +1,39 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 菜品每日库存
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DishStock implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //菜品id
+    private Long dishId;
+
+    //库存日期
+    private LocalDate stockDate;
+
+    //当日总库存
+    private Integer total;
+
+    //已分配给各服务节点的库存，不会超过总库存
+    private Integer allocated;
+
+    //已支付的份数
+    private Integer sold;
+
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,68 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 订单事件，与订单状态修改在同一个事务中写入，由后台任务投递给各个处理器
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEvent implements Serializable {
+
+    /**
+     * 事件类型
+     */
+    public static final String PAID = "PAID";
+    public static final String REMINDER = "REMINDER";
+    public static final String CONFIRMED = "CONFIRMED";
+    public static final String REJECTED = "REJECTED";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String DELIVERY = "DELIVERY";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String REFUND = "REFUND";
+
+    /**
+     * 投递状态 0待投递 1已投递 2投递失败
+     */
+    public static final Integer PENDING = 0;
+    public static final Integer PUBLISHED = 1;
+    public static final Integer FAILED = 2;
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //订单id
+    private Long orderId;
+
+    //订单号
+    private String orderNumber;
+
+    //事件类型
+    private String type;
+
+    //事件附加数据，json格式
+    private String payload;
+
+    //投递状态 0待投递 1已投递 2投递失败
+    private Integer status;
+
+    //投递失败的次数
+    private Integer attempts;
+
+    //下次投递的时间，投递失败后按指数退避推迟
+    private LocalDateTime nextRetryTime;
+
+    private LocalDateTime createTime;
+
+    //投递完成的时间
+    private LocalDateTime publishTime;
+}
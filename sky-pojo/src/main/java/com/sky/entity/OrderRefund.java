@@ -0,0 +1,65 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 退款申请
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderRefund implements Serializable {
+
+    /**
+     * 退款状态 0待申请（包括等待重试） 1已受理 2申请失败
+     */
+    public static final Integer PENDING = 0;
+    public static final Integer SUCCESS = 1;
+    public static final Integer FAILED = 2;
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //订单id
+    private Long orderId;
+
+    //订单号
+    private String orderNumber;
+
+    //商户退款单号，与订单号相同，重复申请时微信支付按退款单号去重
+    private String outRefundNo;
+
+    //订单金额
+    private BigDecimal amount;
+
+    //退款状态 0待申请 1已受理 2申请失败
+    private Integer status;
+
+    //申请失败的次数
+    private Integer attempts;
+
+    //下次申请的时间
+    @com.fasterxml.jackson.annotation.JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime nextRetryTime;
+
+    //最近一次失败的原因
+    private String lastError;
+
+    //微信支付退款单号
+    private String refundId;
+
+    @com.fasterxml.jackson.annotation.JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createTime;
+
+    @com.fasterxml.jackson.annotation.JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updateTime;
+}
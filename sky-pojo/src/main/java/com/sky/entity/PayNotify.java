@@ -0,0 +1,47 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 支付成功通知
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayNotify implements Serializable {
+
+    /**
+     * 处理状态 0待处理 1已处理
+     */
+    public static final Integer PENDING = 0;
+    public static final Integer PROCESSED = 1;
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //微信支付交易号，同一笔支付的重复通知交易号相同
+    private String transactionId;
+
+    //商户平台订单号
+    private String outTradeNo;
+
+    //处理状态 0待处理 1已处理
+    private Integer status;
+
+    //处理失败的次数
+    private Integer attempts;
+
+    //收到通知的时间
+    private LocalDateTime createTime;
+
+    //处理完成的时间
+    private LocalDateTime processTime;
+}
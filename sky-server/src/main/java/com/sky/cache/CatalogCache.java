@@ -0,0 +1,180 @@
+package com.sky.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按id查询菜品、套餐的进程内缓存，供购物车、管理端详情查询共用；删除校验等需要最新状态的场景直接查询数据库
+ * 返回的是缓存对象的副本，调用方修改不会影响缓存
+ * 数据变更时在事务提交后清理，并通过Redis频道通知所有节点
+ */
+@Component
+@Slf4j
+public class CatalogCache implements MessageListener {
+
+    public static final String INVALIDATE_CHANNEL = "sky:cache:catalog:invalidate";
+
+    private static final String DISH = "dish";
+
+    private static final String SETMEAL = "setmeal";
+
+    private Cache<Long, Dish> dishes;
+
+    private Cache<Long, Setmeal> setmeals;
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    @Autowired
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sky.cache.catalog.local-ttl:PT10M}")
+    private Duration localTtl;
+
+    @Value("${sky.cache.catalog.local-max-size:10000}")
+    private long localMaxSize;
+
+    @PostConstruct
+    public void init() {
+        dishes = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        setmeals = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, dishes, "catalogCache", "type", DISH);
+        CaffeineCacheMetrics.monitor(meterRegistry, setmeals, "catalogCache", "type", SETMEAL);
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 根据id查询菜品
+     * @param id
+     * @return
+     */
+    public Dish getDish(Long id) {
+        Dish dish = dishes.get(id, dishMapper::getById);
+        if (dish == null) {
+            return null;
+        }
+        Dish copy = new Dish();
+        BeanUtils.copyProperties(dish, copy);
+        return copy;
+    }
+
+    /**
+     * 根据id查询套餐
+     * @param id
+     * @return
+     */
+    public Setmeal getSetmeal(Long id) {
+        Setmeal setmeal = setmeals.get(id, setmealMapper::getById);
+        if (setmeal == null) {
+            return null;
+        }
+        Setmeal copy = new Setmeal();
+        BeanUtils.copyProperties(setmeal, copy);
+        return copy;
+    }
+
+    /**
+     * 清理菜品缓存
+     * @param ids
+     */
+    public void evictDishes(Collection<Long> ids) {
+        evict(DISH, ids);
+    }
+
+    /**
+     * 清理套餐缓存
+     * @param ids
+     */
+    public void evictSetmeals(Collection<Long> ids) {
+        evict(SETMEAL, ids);
+    }
+
+    /**
+     * 收到其他节点的清理通知，清理本节点的缓存，消息格式为{类型}:{id,id,...}
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] body = new String(message.getBody(), StandardCharsets.UTF_8).split(":");
+        invalidateLocal(body[0], Arrays.stream(body[1].split(",")).map(Long::valueOf).collect(Collectors.toList()));
+    }
+
+    private void evict(String type, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        Runnable action = () -> {
+            invalidateLocal(type, ids);
+            try {
+                String target = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+                stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, type + ":" + target);
+            } catch (Exception e) {
+                log.error("发布菜品套餐缓存清理通知失败：{}", e.getMessage());
+            }
+        };
+        //存在事务时在事务提交后清理，避免其他请求把提交前的旧数据重新写入缓存
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void invalidateLocal(String type, Collection<Long> ids) {
+        if (DISH.equals(type)) {
+            dishes.invalidateAll(ids);
+        } else {
+            setmeals.invalidateAll(ids);
+        }
+    }
+}
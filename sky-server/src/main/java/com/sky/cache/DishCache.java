@@ -0,0 +1,314 @@
+package com.sky.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.vo.DishVO;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 用户端菜品列表的两级缓存：进程内Caffeine缓存 + Redis
+ * 两级缓存的key都带有菜单版本号（dish_{版本}_{分类id}），菜品数据变更时递增版本号，旧版本的key不再被读取并自然过期；
+ * 版本号保存在本节点内存中，读取缓存时不需要额外访问Redis，变更时通过Redis频道通知所有节点
+ * 同一key同时未命中时由Caffeine合并为一个加载任务，加载在独立线程中执行，不占用缓存的计算锁；
+ * 进程内缓存临近过期时概率性提前刷新，过期后的一段时间内先返回旧数据并在后台刷新
+ */
+@Component
+@Slf4j
+public class DishCache implements MessageListener {
+
+    public static final String KEY_PREFIX = "dish_";
+
+    public static final String INVALIDATE_CHANNEL = "sky:cache:dish:invalidate";
+
+    //清理全部菜品缓存
+    public static final String ALL = "*";
+
+    private AsyncCache<String, Entry> localCache;
+
+    //正在后台刷新的key
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    //加载线程，同一key只有一个加载任务，任务数不超过分类数
+    private final ExecutorService loadExecutor = new ThreadPoolExecutor(4, 4,
+            60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> {
+                Thread thread = new Thread(r, "dish-cache-load");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    //后台刷新线程，队列满时放弃本次刷新
+    private final ExecutorService refreshExecutor = new ThreadPoolExecutor(1, 2,
+            60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(100),
+            r -> {
+                Thread thread = new Thread(r, "dish-cache-refresh");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MenuSnapshotCache menuSnapshotCache;
+
+    @Autowired
+    private MenuVersion menuVersion;
+
+    @Value("${sky.cache.dish.local-ttl:PT5M}")
+    private Duration localTtl;
+
+    @Value("${sky.cache.dish.local-max-size:1000}")
+    private long localMaxSize;
+
+    @Value("${sky.cache.dish.redis-ttl:P1D}")
+    private Duration redisTtl;
+
+    //进程内缓存过期后仍可返回旧数据的时间
+    @Value("${sky.cache.dish.stale-window:PT30S}")
+    private Duration staleWindow;
+
+    //提前刷新系数，越大越早刷新，0表示不提前刷新
+    @Value("${sky.cache.dish.early-refresh-beta:1.0}")
+    private double earlyRefreshBeta;
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl.plus(staleWindow))
+                .executor(loadExecutor)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache.synchronous(), "dishCache", "tier", "local");
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        loadExecutor.shutdownNow();
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 查询分类下起售中的菜品，依次查询进程内缓存、Redis，都未命中时调用loader查询数据库
+     * @param categoryId
+     * @param loader
+     * @return
+     */
+    public List<DishVO> get(Long categoryId, Supplier<List<DishVO>> loader) {
+        String key = key(categoryId);
+        CompletableFuture<Entry> cached = localCache.getIfPresent(key);
+        if (cached != null && cached.isDone() && !cached.isCompletedExceptionally()) {
+            Entry entry = cached.join();
+            long now = System.currentTimeMillis();
+            if (now >= entry.loadedAt + localTtl.toMillis()) {
+                //已过期但仍在容忍时间内，先返回旧数据，后台刷新
+                record("local", "stale");
+                refreshAsync(key, loader);
+            } else if (shouldRefreshEarly(entry, now)) {
+                record("local", "early-refresh");
+                refreshAsync(key, loader);
+            }
+            return entry.value;
+        }
+
+        try {
+            //未命中或正在加载，同一key的调用方共享同一个加载任务
+            return localCache.get(key, (k, executor) -> CompletableFuture.supplyAsync(() -> load(k, loader), executor))
+                    .join().value;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 清理某个分类的菜品缓存
+     * @param categoryId
+     */
+    public void evict(Long categoryId) {
+        afterCommit(() -> invalidate(categoryId.toString()));
+    }
+
+    /**
+     * 清理全部菜品缓存，递增版本号即可使所有旧key失效，时间复杂度为O(1)
+     */
+    public void evictAll() {
+        afterCommit(() -> invalidate(ALL));
+    }
+
+    /**
+     * 收到其他节点的清理通知，清理本节点的进程内缓存
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] body = new String(message.getBody(), StandardCharsets.UTF_8).split("@");
+        invalidateLocal(body[0], Long.parseLong(body[1]));
+    }
+
+    /**
+     * 从Redis或数据库加载，空列表同样视为有效的缓存数据
+     */
+    @SuppressWarnings("unchecked")
+    private Entry load(String key, Supplier<List<DishVO>> loader) {
+        long start = System.currentTimeMillis();
+        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
+        if (list != null) {
+            record("redis", "hit");
+        } else {
+            record("redis", "miss");
+            list = loader.get();
+            redisTemplate.opsForValue().set(key, list, redisTtl);
+        }
+        long now = System.currentTimeMillis();
+        return new Entry(list, now, now - start);
+    }
+
+    private void refreshAsync(String key, Supplier<List<DishVO>> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    //旧版本的key不会再被读取，刷新结果直接写入即可
+                    localCache.put(key, CompletableFuture.completedFuture(load(key, loader)));
+                } catch (RuntimeException e) {
+                    log.error("刷新菜品缓存失败：{}", e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(key);
+            throw e;
+        }
+    }
+
+    /**
+     * 概率性提前刷新：越接近过期、加载耗时越长，提前刷新的概率越大
+     */
+    private boolean shouldRefreshEarly(Entry entry, long now) {
+        if (earlyRefreshBeta <= 0) {
+            return false;
+        }
+        double gap = -entry.loadMillis * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return now + gap >= entry.loadedAt + localTtl.toMillis();
+    }
+
+    /**
+     * 存在事务时在事务提交后执行，避免其他请求把提交前的旧数据重新写入缓存
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 递增菜单版本号，清理本节点的进程内缓存，并通知其他节点
+     * 版本号随清理通知一起发送，保证各节点都在清理缓存之后才使用新版本号
+     */
+    private void invalidate(String target) {
+        long version = menuVersion.next();
+        invalidateLocal(target, version);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, target + "@" + version);
+        } catch (Exception e) {
+            log.error("发布菜品缓存清理通知失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 旧版本的key已不会被读取，这里清理只是为了尽早释放内存
+     */
+    private void invalidateLocal(String target, long version) {
+        if (ALL.equals(target)) {
+            localCache.synchronous().invalidateAll();
+        } else {
+            String suffix = "_" + target;
+            localCache.synchronous().asMap().keySet().removeIf(key -> key.endsWith(suffix));
+        }
+        //菜品快照依赖进程内缓存，在进程内缓存清理之后再清理，避免用旧数据重建快照
+        menuSnapshotCache.invalidateLocal(MenuSnapshotCache.DISH, version);
+    }
+
+    /**
+     * 本节点当前菜单版本下分类对应的缓存key
+     */
+    private String key(Long categoryId) {
+        return KEY_PREFIX + menuVersion.get() + "_" + categoryId;
+    }
+
+    private void record(String tier, String result) {
+        meterRegistry.counter("sky.cache.dish", "tier", tier, "result", result).increment();
+    }
+
+    private static class Entry {
+        private final List<DishVO> value;
+        //写入时间
+        private final long loadedAt;
+        //加载耗时
+        private final long loadMillis;
+
+        Entry(List<DishVO> value, long loadedAt, long loadMillis) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.loadMillis = loadMillis;
+        }
+    }
+}
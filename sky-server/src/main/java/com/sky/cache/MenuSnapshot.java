@@ -0,0 +1,86 @@
+package com.sky.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * 预先序列化好的菜单响应，直接以字节写出，避免每次请求重新序列化
+ */
+public class MenuSnapshot {
+
+    private final byte[] body;
+
+    //压缩后的响应体，响应体较小时为null
+    private final byte[] gzipBody;
+
+    private final String etag;
+
+    public MenuSnapshot(byte[] body, String etag, int gzipMinSize) {
+        this.body = body;
+        this.gzipBody = body.length >= gzipMinSize ? gzip(body) : null;
+        this.etag = etag;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * 构造响应，客户端缓存的版本与当前一致时返回304
+     * @param request
+     * @return
+     */
+    public ResponseEntity<byte[]> toResponse(HttpServletRequest request) {
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (gzipBody != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzipBody);
+        }
+        return builder.body(body);
+    }
+
+    /**
+     * 判断If-None-Match请求头中是否包含指定的ETag
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,241 @@
+package com.sky.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.result.Result;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 用户端菜单接口（菜品、套餐、分类列表）的响应快照缓存
+ * 快照是序列化好的Result JSON字节，key为"{类型}:{参数}"，如dish:11、setmeal:13、category:1
+ * 数据变更时按类型清理并递增菜单版本号，通过Redis频道通知所有节点
+ * 快照的ETag由构建时的菜单版本号生成，客户端携带当前版本的ETag时直接返回304
+ * 同一快照同时未命中时只构建一次，构建在独立线程中执行，查询数据时不占用缓存的计算锁
+ */
+@Component
+@Slf4j
+public class MenuSnapshotCache implements MessageListener {
+
+    public static final String DISH = "dish";
+
+    public static final String SETMEAL = "setmeal";
+
+    public static final String CATEGORY = "category";
+
+    public static final String INVALIDATE_CHANNEL = "sky:cache:menu:invalidate";
+
+    private AsyncCache<String, MenuSnapshot> snapshots;
+
+    //快照被清理的次数，构建期间发生清理时丢弃构建结果
+    private final AtomicLong generation = new AtomicLong();
+
+    //快照构建线程，同一key只有一个构建任务
+    private final ExecutorService buildExecutor = new ThreadPoolExecutor(4, 4,
+            60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> {
+                Thread thread = new Thread(r, "menu-snapshot-build");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MenuVersion menuVersion;
+
+    @Value("${sky.cache.menu.local-ttl:PT5M}")
+    private Duration localTtl;
+
+    @Value("${sky.cache.menu.local-max-size:1000}")
+    private long localMaxSize;
+
+    //响应体达到该大小才额外保存压缩后的字节
+    @Value("${sky.cache.menu.gzip-min-size:1024}")
+    private int gzipMinSize;
+
+    @PostConstruct
+    public void init() {
+        snapshots = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .executor(buildExecutor)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots.synchronous(), "menuSnapshotCache");
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        buildExecutor.shutdownNow();
+    }
+
+    /**
+     * 响应菜单查询，客户端缓存的是当前版本时直接返回304，不访问Redis和数据库
+     * @param type 快照类型
+     * @param param 查询参数
+     * @param loader
+     * @param request
+     * @return
+     */
+    public ResponseEntity<byte[]> respond(String type, Object param, Supplier<?> loader, HttpServletRequest request) {
+        if (MenuSnapshot.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), menuVersion.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(menuVersion.etag()).build();
+        }
+        return get(type, param, loader).toResponse(request);
+    }
+
+    /**
+     * 获取菜单快照，不存在时调用loader查询数据并序列化
+     * @param type 快照类型
+     * @param param 查询参数
+     * @param loader
+     * @return
+     */
+    public MenuSnapshot get(String type, Object param, Supplier<?> loader) {
+        String key = type + ":" + param;
+        long currentGeneration = generation.get();
+        //先读取版本号再查询数据，保证快照内容不会比版本号旧
+        long version = menuVersion.get();
+        CompletableFuture<MenuSnapshot> future = snapshots.get(key,
+                (k, executor) -> CompletableFuture.supplyAsync(() -> build(loader.get(), version), executor));
+        MenuSnapshot snapshot;
+        try {
+            snapshot = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        if (currentGeneration != generation.get()) {
+            //构建期间数据发生变更，快照可能是旧数据，下次请求重新构建；只移除本次取到的快照，不影响之后新构建的
+            snapshots.asMap().remove(key, future);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 清理某一类型的全部快照，并递增菜单版本号
+     * @param type
+     */
+    public void evict(String type) {
+        afterCommit(() -> {
+            long version = menuVersion.next();
+            invalidateLocal(type, version);
+            try {
+                stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, type + "@" + version);
+            } catch (Exception e) {
+                log.error("发布菜单快照清理通知失败：{}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 收到其他节点的清理通知，清理本节点的快照
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] body = new String(message.getBody(), StandardCharsets.UTF_8).split("@");
+        invalidateLocal(body[0], Long.parseLong(body[1]));
+    }
+
+    /**
+     * 定期与Redis中的版本号对齐，防止丢失清理通知后本节点一直使用旧版本号
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void syncVersion() {
+        long latest = menuVersion.fetch();
+        if (latest > menuVersion.get()) {
+            log.info("菜单版本号落后，清理全部菜单快照：{} -> {}", menuVersion.get(), latest);
+            generation.incrementAndGet();
+            snapshots.synchronous().invalidateAll();
+            menuVersion.advance(latest);
+        }
+    }
+
+    private MenuSnapshot build(Object data, long version) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(Result.success(data));
+            return new MenuSnapshot(body, MenuVersion.etag(version), gzipMinSize);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("菜单快照序列化失败", e);
+        }
+    }
+
+    /**
+     * 清理本节点某一类型的快照，之后再更新本节点的版本号
+     * @param type
+     * @param version 变更后的菜单版本号
+     */
+    void invalidateLocal(String type, long version) {
+        generation.incrementAndGet();
+        String prefix = type + ":";
+        //包括仍在构建中的快照
+        snapshots.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        menuVersion.advance(version);
+    }
+
+    /**
+     * 存在事务时在事务提交后执行
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.sky.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 用户端菜单版本号，菜品、套餐、分类每次变更都会递增
+ * 版本号保存在Redis中，各节点在内存中保留一份副本，判断客户端缓存是否过期时不需要访问Redis
+ */
+@Component
+@Slf4j
+public class MenuVersion {
+
+    public static final String VERSION_KEY = "menu:version";
+
+    private final AtomicLong current = new AtomicLong();
+
+    @Autowired
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @PostConstruct
+    public void init() {
+        try {
+            advance(fetch());
+        } catch (Exception e) {
+            log.error("读取菜单版本号失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 本节点当前的菜单版本号
+     * @return
+     */
+    public long get() {
+        return current.get();
+    }
+
+    /**
+     * 本节点当前菜单版本对应的ETag
+     * @return
+     */
+    public String etag() {
+        return etag(current.get());
+    }
+
+    public static String etag(long version) {
+        return "\"menu-" + version + "\"";
+    }
+
+    /**
+     * 在Redis中递增版本号并返回新版本号，本节点的副本需在清理缓存后调用advance更新
+     * @return
+     */
+    public long next() {
+        return stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+    }
+
+    /**
+     * 更新本节点的版本号，只会变大
+     * @param version
+     */
+    public void advance(long version) {
+        current.accumulateAndGet(version, Math::max);
+    }
+
+    /**
+     * 读取Redis中的最新版本号
+     * @return
+     */
+    public long fetch() {
+        String version = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        return version == null ? 0L : Long.parseLong(version);
+    }
+}
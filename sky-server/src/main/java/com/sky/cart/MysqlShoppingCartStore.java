@@ -0,0 +1,43 @@
+package com.sky.cart;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+
+/**
+ * 直接保存在shopping_cart表中的购物车
+ * 加购通过insert ... on duplicate key update一条语句完成，并发加购不会丢失数量
+ */
+@Component
+@ConditionalOnProperty(name = "sky.cart.store", havingValue = "mysql")
+public class MysqlShoppingCartStore implements ShoppingCartStore {
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    public void add(ShoppingCart item, int number, Supplier<ShoppingCart> snapshotLoader) {
+        Long userId = item.getUserId();
+        ShoppingCart shoppingCart = snapshotLoader.get();
+        shoppingCart.setId(null);
+        shoppingCart.setUserId(userId);
+        shoppingCart.setNumber(number);
+        shoppingCart.setCreateTime(LocalDateTime.now());
+        shoppingCartMapper.insertOrIncrement(shoppingCart);
+    }
+
+    public List<ShoppingCart> list(Long userId) {
+        return shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+    }
+
+    public void clear(Long userId) {
+        //与订单在同一事务中删除
+        shoppingCartMapper.deleteByUserId(userId);
+    }
+}
@@ -0,0 +1,282 @@
+package com.sky.cart;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.task.TaskLease;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 基于Redis哈希的购物车，每个用户一个哈希（sky:cart:{用户id}）
+ * 字段{商品}#n保存数量，通过HINCRBY原子递增；字段{商品}#s保存加入购物车时的商品快照（名称、图片、单价）
+ * 修改后将用户加入待写回集合，定时批量写回shopping_cart表；Redis中没有该用户的购物车时从数据库加载
+ * 写回时先将用户从待写回集合移到写回中集合，写回成功后再移除，节点宕机时遗留的用户在下次写回时继续处理
+ */
+@Component
+@ConditionalOnProperty(name = "sky.cart.store", havingValue = "redis", matchIfMissing = true)
+@Slf4j
+public class RedisShoppingCartStore implements ShoppingCartStore {
+
+    public static final String KEY_PREFIX = "sky:cart:";
+
+    //有修改、等待写回数据库的用户id
+    public static final String DIRTY_KEY = "sky:cart:dirty";
+
+    //正在写回数据库的用户id
+    public static final String FLUSHING_KEY = "sky:cart:flushing";
+
+    //标记购物车已从数据库加载，用于区分空购物车和尚未加载
+    private static final String LOADED_FIELD = "_loaded";
+
+    private static final String NUMBER_SUFFIX = "#n";
+
+    private static final String SNAPSHOT_SUFFIX = "#s";
+
+    //每次写回的用户数
+    private static final int FLUSH_SIZE = 100;
+
+    //key不存在时才写入从数据库加载的购物车，避免覆盖并发请求已经写入的数量
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then return 0 end " +
+            "for i = 2, #ARGV, 2 do redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('pexpire', KEYS[1], ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    //清空购物车，只保留已加载标记
+    private static final RedisScript<Long> CLEAR_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('del', KEYS[1]) " +
+            "redis.call('hset', KEYS[1], ARGV[2], '1') " +
+            "redis.call('pexpire', KEYS[1], ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private TaskLease taskLease;
+
+    //购物车在Redis中的保留时间，每次修改后重新计算
+    @Value("${sky.cart.ttl:P7D}")
+    private Duration ttl;
+
+    //每轮写回的最长时间，需小于写回任务的租约时间（1分钟），未处理完的用户留到下一轮
+    @Value("${sky.cart.flush-max-duration:PT20S}")
+    private Duration flushMaxDuration;
+
+    public void add(ShoppingCart item, int number, Supplier<ShoppingCart> snapshotLoader) {
+        Long userId = item.getUserId();
+        String key = key(userId);
+        ensureLoaded(userId);
+
+        HashOperations<String, String, String> hash = redisTemplate.opsForHash();
+        String field = field(item);
+        if (!hash.hasKey(key, field + SNAPSHOT_SUFFIX)) {
+            ShoppingCart snapshot = snapshotLoader.get();
+            snapshot.setId(null);
+            snapshot.setUserId(null);
+            snapshot.setNumber(null);
+            snapshot.setCreateTime(LocalDateTime.now());
+            hash.putIfAbsent(key, field + SNAPSHOT_SUFFIX, JSON.toJSONString(snapshot));
+        }
+        hash.increment(key, field + NUMBER_SUFFIX, number);
+        touch(userId);
+    }
+
+    public List<ShoppingCart> list(Long userId) {
+        ensureLoaded(userId);
+        HashOperations<String, String, String> hash = redisTemplate.opsForHash();
+        return toItems(userId, hash.entries(key(userId)));
+    }
+
+    public void clear(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doClear(userId);
+                }
+            });
+        } else {
+            doClear(userId);
+        }
+    }
+
+    /**
+     * 定时将有修改的购物车写回数据库
+     */
+    @Scheduled(fixedDelayString = "${sky.cart.flush-interval:2000}")
+    public void flush() {
+        taskLease.runExclusively("flushShoppingCart", Duration.ofMinutes(1), Duration.ZERO, this::flushDirtyCarts);
+    }
+
+    private void flushDirtyCarts() {
+        long deadline = System.currentTimeMillis() + flushMaxDuration.toMillis();
+
+        //上次写回中断时遗留的用户
+        Set<String> leftover = redisTemplate.opsForSet().members(FLUSHING_KEY);
+        if (leftover != null) {
+            for (String userId : leftover) {
+                if (timeUp(deadline)) {
+                    return;
+                }
+                flushUser(userId);
+            }
+        }
+
+        //本轮最多处理开始时的待写回用户数，写回失败放回的用户留到下一轮
+        Long dirty = redisTemplate.opsForSet().size(DIRTY_KEY);
+        for (long handled = 0; dirty != null && handled < dirty; handled += FLUSH_SIZE) {
+            Set<String> userIds = redisTemplate.opsForSet().distinctRandomMembers(DIRTY_KEY, FLUSH_SIZE);
+            if (userIds == null || userIds.isEmpty()) {
+                return;
+            }
+            for (String userId : userIds) {
+                if (timeUp(deadline)) {
+                    return;
+                }
+                //移到写回中集合后再读取购物车，写回期间的新修改会重新加入待写回集合
+                if (Boolean.TRUE.equals(redisTemplate.opsForSet().move(DIRTY_KEY, userId, FLUSHING_KEY))) {
+                    flushUser(userId);
+                }
+            }
+        }
+    }
+
+    private boolean timeUp(long deadline) {
+        if (System.currentTimeMillis() < deadline) {
+            return false;
+        }
+        log.info("购物车写回达到本轮最长时间，剩余用户留到下一轮");
+        return true;
+    }
+
+    private void flushUser(String userId) {
+        HashOperations<String, String, String> hash = redisTemplate.opsForHash();
+        Map<String, String> entries = hash.entries(key(Long.valueOf(userId)));
+        try {
+            //Redis中的购物车已过期时以数据库为准
+            if (!entries.isEmpty()) {
+                List<ShoppingCart> items = toItems(Long.valueOf(userId), entries);
+                transactionTemplate.executeWithoutResult(status -> {
+                    shoppingCartMapper.deleteByUserId(Long.valueOf(userId));
+                    if (!items.isEmpty()) {
+                        shoppingCartMapper.insertBatch(items);
+                    }
+                });
+            }
+            redisTemplate.opsForSet().remove(FLUSHING_KEY, userId);
+        } catch (Exception e) {
+            log.error("购物车写回数据库失败，用户id：{}，{}", userId, e.getMessage());
+            redisTemplate.opsForSet().move(FLUSHING_KEY, userId, DIRTY_KEY);
+        }
+    }
+
+    private void doClear(Long userId) {
+        redisTemplate.execute(CLEAR_SCRIPT, Collections.singletonList(key(userId)),
+                String.valueOf(ttl.toMillis()), LOADED_FIELD);
+        redisTemplate.opsForSet().add(DIRTY_KEY, userId.toString());
+    }
+
+    /**
+     * Redis中没有该用户的购物车时从数据库加载
+     */
+    private void ensureLoaded(Long userId) {
+        String key = key(userId);
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+            return;
+        }
+
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(ttl.toMillis()));
+        args.add(LOADED_FIELD);
+        args.add("1");
+        List<ShoppingCart> rows = shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+        for (ShoppingCart row : rows) {
+            String field = field(row);
+            args.add(field + NUMBER_SUFFIX);
+            args.add(String.valueOf(row.getNumber()));
+            ShoppingCart snapshot = ShoppingCart.builder()
+                    .name(row.getName())
+                    .dishId(row.getDishId())
+                    .setmealId(row.getSetmealId())
+                    .dishFlavor(row.getDishFlavor())
+                    .amount(row.getAmount())
+                    .image(row.getImage())
+                    .createTime(row.getCreateTime())
+                    .build();
+            args.add(field + SNAPSHOT_SUFFIX);
+            args.add(JSON.toJSONString(snapshot));
+        }
+        redisTemplate.execute(LOAD_SCRIPT, Collections.singletonList(key), args.toArray());
+    }
+
+    private List<ShoppingCart> toItems(Long userId, Map<String, String> entries) {
+        List<ShoppingCart> items = new ArrayList<>();
+        entries.forEach((field, value) -> {
+            if (!field.endsWith(SNAPSHOT_SUFFIX)) {
+                return;
+            }
+            String number = entries.get(field.substring(0, field.length() - SNAPSHOT_SUFFIX.length()) + NUMBER_SUFFIX);
+            if (number == null || Integer.parseInt(number) <= 0) {
+                return;
+            }
+            ShoppingCart item = JSON.parseObject(value, ShoppingCart.class);
+            item.setUserId(userId);
+            item.setNumber(Integer.valueOf(number));
+            items.add(item);
+        });
+        items.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.reverseOrder())));
+        return items;
+    }
+
+    /**
+     * 刷新过期时间，并标记为待写回
+     */
+    private void touch(Long userId) {
+        redisTemplate.expire(key(userId), ttl);
+        redisTemplate.opsForSet().add(DIRTY_KEY, userId.toString());
+    }
+
+    private String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    /**
+     * 购物车中商品的字段名：菜品为d{菜品id}:{口味}，套餐为s{套餐id}
+     */
+    private String field(ShoppingCart item) {
+        if (item.getDishId() != null) {
+            return "d" + item.getDishId() + ":" + (item.getDishFlavor() == null ? "" : item.getDishFlavor());
+        }
+        return "s" + item.getSetmealId();
+    }
+}
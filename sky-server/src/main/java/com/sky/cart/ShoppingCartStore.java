@@ -0,0 +1,33 @@
+package com.sky.cart;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.sky.entity.ShoppingCart;
+
+/**
+ * 购物车存储，可选择Redis或MySQL实现
+ */
+public interface ShoppingCartStore {
+
+    /**
+     * 增加商品数量，需要新增购物车记录时调用snapshotLoader获取商品名称、图片和单价
+     * @param item 包含用户id、菜品id或套餐id、口味
+     * @param number 增加的数量
+     * @param snapshotLoader
+     */
+    void add(ShoppingCart item, int number, Supplier<ShoppingCart> snapshotLoader);
+
+    /**
+     * 查询用户购物车，按加入时间倒序
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> list(Long userId);
+
+    /**
+     * 清空用户购物车，在下单事务中调用时，下单失败不会清空购物车
+     * @param userId
+     */
+    void clear(Long userId);
+}
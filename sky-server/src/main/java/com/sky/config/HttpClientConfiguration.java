@@ -0,0 +1,94 @@
+package com.sky.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.sky.properties.HttpClientProperties;
+import com.sky.utils.HttpClientUtil;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 调用外部接口的HTTP连接池
+ * 微信登录、百度地图共用一个连接池，微信支付使用单独的连接池，支付接口变慢时不会占满其他接口的连接；
+ * 连接池的连接数、空闲连接等指标注册到Micrometer，名称为httpcomponents.httpclient.pool.*
+ */
+@Configuration
+@Slf4j
+public class HttpClientConfiguration {
+
+    @Bean
+    public PoolingHttpClientConnectionManager httpConnectionManager(HttpClientProperties httpClientProperties,
+                                                                    MeterRegistry meterRegistry) {
+        return connectionManager(httpClientProperties, meterRegistry, "outbound");
+    }
+
+    @Bean
+    public PoolingHttpClientConnectionManager weChatPayConnectionManager(HttpClientProperties httpClientProperties,
+                                                                         MeterRegistry meterRegistry) {
+        return connectionManager(httpClientProperties, meterRegistry, "wechatpay");
+    }
+
+    @Bean
+    public RequestConfig httpRequestConfig(HttpClientProperties httpClientProperties) {
+        return RequestConfig.custom()
+                .setConnectTimeout(httpClientProperties.getConnectTimeout())
+                .setConnectionRequestTimeout(httpClientProperties.getConnectionRequestTimeout())
+                .setSocketTimeout(httpClientProperties.getSocketTimeout())
+                .build();
+    }
+
+    /**
+     * 服务端返回了Keep-Alive时按服务端的时间保持连接，否则按配置的时间保持
+     */
+    @Bean
+    public ConnectionKeepAliveStrategy httpKeepAliveStrategy(HttpClientProperties httpClientProperties) {
+        return (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : httpClientProperties.getKeepAlive();
+        };
+    }
+
+    @Bean
+    public CloseableHttpClient httpClient(@Qualifier("httpConnectionManager") PoolingHttpClientConnectionManager httpConnectionManager,
+                                          RequestConfig httpRequestConfig,
+                                          ConnectionKeepAliveStrategy httpKeepAliveStrategy,
+                                          HttpClientProperties httpClientProperties) {
+        log.info("创建HTTP连接池，最大连接数：{}，每个主机最大连接数：{}",
+                httpClientProperties.getMaxTotal(), httpClientProperties.getMaxPerRoute());
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(httpRequestConfig)
+                .setKeepAliveStrategy(httpKeepAliveStrategy)
+                //后台线程定期关闭过期和空闲过久的连接
+                .evictExpiredConnections()
+                .evictIdleConnections(httpClientProperties.getMaxIdleTime(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Bean
+    public HttpClientUtil httpClientUtil(CloseableHttpClient httpClient) {
+        return new HttpClientUtil(httpClient);
+    }
+
+    private PoolingHttpClientConnectionManager connectionManager(HttpClientProperties httpClientProperties,
+                                                                 MeterRegistry meterRegistry, String name) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(httpClientProperties.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(httpClientProperties.getMaxPerRoute());
+        connectionManager.setValidateAfterInactivity(httpClientProperties.getValidateAfterInactivity());
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+        return connectionManager;
+    }
+}
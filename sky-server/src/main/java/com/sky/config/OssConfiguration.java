@@ -5,7 +5,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 
+import com.aliyun.oss.ClientBuilderConfiguration;
 import com.sky.properties.AliOssProperties;
+import com.sky.properties.HttpClientProperties;
 import com.sky.utils.AliOssUtil;
 
 import lombok.extern.slf4j.Slf4j;
@@ -16,9 +18,9 @@ import lombok.extern.slf4j.Slf4j;
 @Configuration
 @Slf4j
 public class OssConfiguration {
-    @Bean
+    @Bean(destroyMethod = "shutdown")
     @ConditionalOnMissingBean
-    public AliOssUtil aliOssUtil(AliOssProperties aliOssProperties){
+    public AliOssUtil aliOssUtil(AliOssProperties aliOssProperties, HttpClientProperties httpClientProperties){
         log.info("开始创建阿里云文件上传工具类对象");
         log.info("OSS配置信息 - endpoint: {}, bucketName: {}, accessKeyId: {}", 
                 aliOssProperties.getEndpoint(), 
@@ -30,11 +32,20 @@ public class OssConfiguration {
             log.error("OSS配置信息不完整，请检查application-dev.yml中的配置");
         }
         
+        //OSSClient的连接池和超时时间与其他外部接口保持一致
+        ClientBuilderConfiguration clientConfiguration = new ClientBuilderConfiguration();
+        clientConfiguration.setMaxConnections(httpClientProperties.getMaxPerRoute());
+        clientConfiguration.setConnectionTimeout(httpClientProperties.getConnectTimeout());
+        clientConfiguration.setConnectionRequestTimeout(httpClientProperties.getConnectionRequestTimeout());
+        clientConfiguration.setSocketTimeout(httpClientProperties.getSocketTimeout());
+        clientConfiguration.setIdleConnectionTime(httpClientProperties.getMaxIdleTime());
+
         return new AliOssUtil(
                 aliOssProperties.getEndpoint(),
                 aliOssProperties.getAccessKeyId(), 
                 aliOssProperties.getAccessKeySecret(), 
-                aliOssProperties.getBucketName()
+                aliOssProperties.getBucketName(),
+                clientConfiguration
         );
     }
 }
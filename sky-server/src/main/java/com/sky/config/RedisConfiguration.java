@@ -1,11 +1,25 @@
 package com.sky.config;
 
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.sky.constant.CacheConstant;
+import com.sky.json.JacksonObjectMapper;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.BatchStrategies;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.context.annotation.Primary;
 
@@ -66,4 +80,48 @@ public class RedisConfiguration {
         
         return redisTemplate;
     }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory){
+        log.info("开始创建redis消息监听容器");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
+    /**
+     * Spring Cache使用的缓存管理器，每个缓存单独设置过期时间，清理操作在事务提交后执行
+     * @param redisConnectionFactory
+     * @param setmealTtl
+     * @param setmealDishTtl
+     * @return
+     */
+    @Bean
+    public RedisCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                          @Value("${sky.cache.setmeal.ttl:PT30M}") Duration setmealTtl,
+                                          @Value("${sky.cache.setmeal-dish.ttl:PT1H}") Duration setmealDishTtl){
+        log.info("开始创建缓存管理器");
+
+        // 缓存值中写入类型信息，读取时还原为原来的对象
+        ObjectMapper objectMapper = new JacksonObjectMapper();
+        objectMapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder()
+                        .allowIfSubType("com.sky.")
+                        .allowIfSubType("java.")
+                        .build(),
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+
+        RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair
+                        .fromSerializer(new GenericJackson2JsonRedisSerializer(objectMapper)))
+                .disableCachingNullValues()
+                .entryTtl(setmealTtl);
+
+        // 清空缓存时使用SCAN代替KEYS，避免阻塞redis
+        return RedisCacheManager.builder(RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory, BatchStrategies.scan(1000)))
+                .cacheDefaults(config)
+                .withCacheConfiguration(CacheConstant.SETMEAL_CACHE, config.entryTtl(setmealTtl))
+                .withCacheConfiguration(CacheConstant.SETMEAL_DISH_CACHE, config.entryTtl(setmealDishTtl))
+                .transactionAware()
+                .build();
+    }
 }
\ No newline at end of file
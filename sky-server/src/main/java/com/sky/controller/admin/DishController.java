@@ -3,6 +3,7 @@ package com.sky.controller.admin;
 
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
+import com.sky.dto.DishStockDTO;
 import com.sky.entity.Dish;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
@@ -119,6 +120,17 @@ public class DishController {
         List<Dish> list = dishService.list(categoryId);
         return Result.success(list);
     }
-    
-    
+
+    /**
+     * 设置菜品当天的库存
+     * @param dishStockDTO
+     * @return
+     */
+    @PutMapping("/stock")
+    @Operation(summary = "设置菜品当天库存")
+    public Result setStock(@RequestBody DishStockDTO dishStockDTO) {
+        log.info("设置菜品当天库存：{}", dishStockDTO);
+        dishService.setStock(dishStockDTO);
+        return Result.success();
+    }
 }
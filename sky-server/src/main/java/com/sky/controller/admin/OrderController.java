@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.sky.entity.OrderRefund;
 import com.sky.service.OrderService;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderVO;
@@ -200,4 +201,16 @@ public class OrderController {
         orderService.complete(id);
         return Result.success();
     }
+
+    /**
+     * 查询退款状态
+     * @param id 订单id
+     * @return
+     */
+    @GetMapping("/refund/{id}")
+    @Operation(summary = "查询退款状态")
+    public Result<OrderRefund> refund(@PathVariable("id") Long id) {
+        OrderRefund orderRefund = orderService.getRefund(id);
+        return Result.success(orderRefund);
+    }
 }
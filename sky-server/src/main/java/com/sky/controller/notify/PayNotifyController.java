@@ -14,8 +14,8 @@ import com.alibaba.druid.support.json.JSONUtils;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.sky.controller.user.AddressBookController;
+import com.sky.pay.PayNotifyInbox;
 import com.sky.properties.WeChatProperties;
-import com.sky.service.OrderService;
 import com.sky.service.impl.AddressBookServiceImpl;
 import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
 
@@ -43,7 +43,7 @@ public class PayNotifyController {
 
     private final AddressBookController addressBookController;
     @Autowired
-    private OrderService orderService;
+    private PayNotifyInbox payNotifyInbox;
     @Autowired
     private WeChatProperties weChatProperties;
 
@@ -73,10 +73,10 @@ public class PayNotifyController {
         String transactionId = jsonObject.getString("transaction_id");//微信支付交易号
 
         log.info("商户平台订单号：{}", outTradeNo);
-        log.info("商户之父交易号", transactionId);
+        log.info("微信支付交易号：{}", transactionId);
 
-        //业务处理，修改订单状态、来电提醒
-        orderService.paySuccess(outTradeNo);
+        //按交易号去重后保存通知，修改订单状态、来单提醒在后台处理，保存失败时抛出异常，微信会重新通知
+        payNotifyInbox.accept(transactionId, outTradeNo);
 
         //给微信响应
         responseToWeixin(response);
@@ -1,20 +1,19 @@
 package com.sky.controller.user;
 
-import java.util.List;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.data.annotation.AccessType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.sky.entity.Category;
-import com.sky.result.Result;
+import com.sky.cache.MenuSnapshotCache;
 import com.sky.service.CategoryService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 
 @RestController("userCategoryController")
@@ -27,6 +26,9 @@ public class CategoryController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private MenuSnapshotCache menuSnapshotCache;
+
     /**
      * 查询分类
      * @param type
@@ -34,9 +36,9 @@ public class CategoryController {
      */
     @GetMapping("/list")
     @Operation(summary = "查询分类")
-    public Result<List<Category>> list(Integer type){
-        List<Category> list = categoryService.list(type);
-        return Result.success(list);
+    public ResponseEntity<byte[]> list(Integer type, HttpServletRequest request){
+        return menuSnapshotCache.respond(MenuSnapshotCache.CATEGORY, type,
+                () -> categoryService.list(type), request);
     }
 
 }
@@ -1,10 +1,9 @@
 package com.sky.controller.user;
 
 import java.util.List;
-import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -14,16 +13,18 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.sky.cache.DishCache;
+import com.sky.cache.MenuSnapshotCache;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
 import com.sky.entity.Dish;
 import com.sky.result.Result;
 import com.sky.service.DishService;
-import com.sky.vo.DishVO;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 
 @RestController("userDishController")
@@ -34,7 +35,9 @@ public class DishController {
     @Autowired
     private DishService dishService;
     @Autowired
-    private RedisTemplate redisTemplate;
+    private DishCache dishCache;
+    @Autowired
+    private MenuSnapshotCache menuSnapshotCache;
     /**
      * 根据分类id查询菜品
      * @param categoryId
@@ -42,26 +45,14 @@ public class DishController {
      */
     @GetMapping("/list")
     @Operation(summary = "根据分类id查询菜品")
-    public Result<List<DishVO>> list(Long categoryId){
-        //构造redis中的key，规则：dish_分类id
-        String key = "dish_" + categoryId;
-
-        //查询redis中是否存在菜品数据
-        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
-        if(list != null && list.size() > 0){
-            //如果存在，直接返回，无须查询数据库
-            return Result.success(list);
-        }
-
+    public ResponseEntity<byte[]> list(Long categoryId, HttpServletRequest request){
         Dish dish = new Dish();
         dish.setCategoryId(categoryId);
         dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
 
-        //如果不存在，查询数据库，将查询到的数据放入redis中
-        list = dishService.listWithFlavor(dish);
-        redisTemplate.opsForValue().set(key, list);
-
-        return Result.success(list);
+        //客户端缓存的是当前菜单版本时直接返回304，否则返回序列化好的快照；快照不存在时依次查询进程内缓存、redis，都不存在时查询数据库并写入缓存
+        return menuSnapshotCache.respond(MenuSnapshotCache.DISH, categoryId,
+                () -> dishCache.get(categoryId, () -> dishService.listWithFlavor(dish)), request);
     }
 
     /**
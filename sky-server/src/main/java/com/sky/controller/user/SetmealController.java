@@ -2,14 +2,15 @@
 package com.sky.controller.user;
 
 import java.util.List;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.annotation.AccessType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.sky.cache.MenuSnapshotCache;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Setmeal;
 import com.sky.result.Result;
@@ -18,6 +19,7 @@ import com.sky.vo.DishItemVO;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 
 @RestController("userSetmealController")
@@ -27,6 +29,8 @@ import lombok.extern.slf4j.Slf4j;
 public class SetmealController {
     @Autowired
     private SetmealService setmealService;
+    @Autowired
+    private MenuSnapshotCache menuSnapshotCache;
 
     /**
      * 条件查询
@@ -36,15 +40,13 @@ public class SetmealController {
      */
     @GetMapping("/list")
     @Operation(summary = "根据分类id查询套餐")
-    @Cacheable(value = "setmealCache", key = "#categoryId")
-    public Result<List<Setmeal>> list(Long categoryId){
+    public ResponseEntity<byte[]> list(Long categoryId, HttpServletRequest request){
         Setmeal setmeal = new Setmeal();
         setmeal.setCategoryId(categoryId);
         setmeal.setStatus(StatusConstant.ENABLE);
-        List<Setmeal> list = setmealService.list(setmeal);
 
-        return Result.success(list);
-        
+        return menuSnapshotCache.respond(MenuSnapshotCache.SETMEAL, categoryId,
+                () -> setmealService.list(setmeal), request);
     }
 
     /**
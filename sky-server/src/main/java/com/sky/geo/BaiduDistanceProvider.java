@@ -0,0 +1,20 @@
+package com.sky.geo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 基于百度驾车路线规划的配送距离（带缓存）
+ */
+@Component
+@ConditionalOnProperty(name = "sky.delivery.distance-provider", havingValue = "baidu", matchIfMissing = true)
+public class BaiduDistanceProvider implements DistanceProvider {
+
+    @Autowired
+    private GeoService geoService;
+
+    public Integer distance(String origin, String destination) {
+        return geoService.drivingDistance(origin, destination);
+    }
+}
@@ -0,0 +1,24 @@
+package com.sky.geo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 基于百度地理编码的地址解析（带缓存）
+ */
+@Component
+@ConditionalOnProperty(name = "sky.delivery.distance-provider", havingValue = "baidu", matchIfMissing = true)
+public class BaiduGeocoder implements Geocoder {
+
+    @Autowired
+    private GeoService geoService;
+
+    public String shopLocation() {
+        return geoService.getShopLocation();
+    }
+
+    public String geocode(String address) {
+        return geoService.geocode(address);
+    }
+}
@@ -0,0 +1,88 @@
+package com.sky.geo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.utils.HttpClientUtil;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 百度地图开放接口调用（地理编码、驾车路线规划）
+ */
+@Component
+@Slf4j
+public class BaiduMapClient {
+
+    public static final String GEOCODING_URL = "http://api.map.baidu.com/geocoding/v3";
+    public static final String DRIVING_URL = "http://api.map.baidu.com/directionlite/v1/driving";
+
+    @Autowired
+    private HttpClientUtil httpClientUtil;
+
+    @Value("${sky.baidu.ak}")
+    private String ak;
+
+    /**
+     * 地址解析
+     * @param address
+     * @return 经纬度，格式为 lng,lat；解析失败返回null
+     */
+    public String geocode(String address) {
+        Map<String, String> map = new HashMap<>();
+        map.put("address", address);
+        map.put("output", "json");
+        map.put("ak", ak);
+        String json = httpClientUtil.doGet(GEOCODING_URL, map);
+        JSONObject jsonObject = parse(json);
+        if (jsonObject == null) {
+            return null;
+        }
+
+        //数据解析
+        JSONObject location = jsonObject.getJSONObject("result").getJSONObject("location");
+        return location.getString("lng") + "," + location.getString("lat");
+    }
+
+    /**
+     * 驾车路线规划
+     * @param origin 起点经纬度
+     * @param destination 终点经纬度
+     * @return 距离，单位：米；规划失败返回null
+     */
+    public Integer drivingDistance(String origin, String destination) {
+        Map<String, String> map = new HashMap<>();
+        map.put("origin", origin);
+        map.put("destination", destination);
+        map.put("steps_info", "0");
+        map.put("ak", ak);
+        String json = httpClientUtil.doGet(DRIVING_URL, map);
+        JSONObject jsonObject = parse(json);
+        if (jsonObject == null) {
+            return null;
+        }
+
+        //数据解析
+        JSONArray routes = jsonObject.getJSONObject("result").getJSONArray("routes");
+        return routes.getJSONObject(0).getInteger("distance");
+    }
+
+    /**
+     * 解析响应，status不为0表示调用失败
+     */
+    private JSONObject parse(String json) {
+        JSONObject jsonObject = JSON.parseObject(json);
+        if (jsonObject == null || !"0".equals(jsonObject.getString("status"))) {
+            log.warn("百度地图接口调用失败：{}", json);
+            return null;
+        }
+        return jsonObject;
+    }
+}
@@ -0,0 +1,70 @@
+package com.sky.geo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.sky.exception.OrderBusinessException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 配送范围校验
+ * 先用直线距离在本地判断明显在范围内或范围外的地址，只有接近配送上限的地址才调用路线规划
+ */
+@Component
+@Slf4j
+public class DeliveryRangeChecker {
+
+    @Autowired
+    private Geocoder geocoder;
+
+    @Autowired
+    private DistanceProvider distanceProvider;
+
+    //最大配送距离，单位：米
+    @Value("${sky.delivery.max-distance:5000}")
+    private int maxDistance;
+
+    //直线距离不超过最大配送距离的该比例时，直接判定为范围内
+    @Value("${sky.delivery.accept-ratio:0.5}")
+    private double acceptRatio;
+
+    /**
+     * 检查客户的收货地址是否超出配送范围
+     * @param address
+     */
+    public void check(String address) {
+        //店铺经纬度
+        String shopLngLat = geocoder.shopLocation();
+        if (shopLngLat == null) {
+            throw new OrderBusinessException("店铺地址解析失败");
+        }
+
+        //客户经纬度
+        String userLngLat = geocoder.geocode(address);
+        if (userLngLat == null) {
+            throw new OrderBusinessException("收货地址解析失败");
+        }
+
+        //道路距离不会小于直线距离，直线距离已超限的地址直接拒绝
+        double straightDistance = GeoUtils.haversine(shopLngLat, userLngLat);
+        if (straightDistance > maxDistance) {
+            log.info("直线距离{}米超出配送范围", (long) straightDistance);
+            throw new OrderBusinessException("超出配送范围");
+        }
+        if (straightDistance <= maxDistance * acceptRatio) {
+            return;
+        }
+
+        //处于临界区间，使用路线规划计算实际配送距离
+        Integer distance = distanceProvider.distance(shopLngLat, userLngLat);
+        if (distance == null) {
+            throw new OrderBusinessException("路线规划失败");
+        }
+
+        if (distance > maxDistance) {
+            throw new OrderBusinessException("超出配送范围");
+        }
+    }
+}
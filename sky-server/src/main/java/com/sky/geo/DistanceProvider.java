@@ -0,0 +1,15 @@
+package com.sky.geo;
+
+/**
+ * 配送距离计算，可替换为不同的路线规划实现
+ */
+public interface DistanceProvider {
+
+    /**
+     * 计算起点到终点的配送距离
+     * @param origin 起点经纬度，格式为 lng,lat
+     * @param destination 终点经纬度，格式为 lng,lat
+     * @return 距离，单位：米；计算失败返回null
+     */
+    Integer distance(String origin, String destination);
+}
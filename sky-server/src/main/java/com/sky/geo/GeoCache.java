@@ -0,0 +1,121 @@
+package com.sky.geo;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 地理编码和路线距离的两级缓存：进程内缓存 + Redis
+ */
+@Component
+@Slf4j
+public class GeoCache {
+
+    public static final String GEOCODE = "geocode";
+    public static final String DISTANCE = "distance";
+
+    private static final String KEY_PREFIX = "geo:";
+
+    private Cache<String, String> localCache;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sky.geo.local-ttl:PT1H}")
+    private Duration localTtl;
+
+    @Value("${sky.geo.redis-ttl:P7D}")
+    private Duration redisTtl;
+
+    @Value("${sky.geo.local-max-size:10000}")
+    private long localMaxSize;
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "geoCache", "tier", "local");
+    }
+
+    /**
+     * 依次查询进程内缓存、Redis，都未命中时调用loader加载并回填两级缓存
+     * @param namespace 缓存类型，geocode或distance
+     * @param key
+     * @param loader 加载失败时返回null，null不会被缓存
+     * @return
+     */
+    public String get(String namespace, String key, Supplier<String> loader) {
+        String cacheKey = KEY_PREFIX + namespace + ":" + key;
+
+        String cached = localCache.getIfPresent(cacheKey);
+        if (cached != null) {
+            record(namespace, "local", "hit");
+            return cached;
+        }
+        record(namespace, "local", "miss");
+
+        String value = getFromRedis(cacheKey);
+        if (value != null) {
+            record(namespace, "redis", "hit");
+            localCache.put(cacheKey, value);
+            return value;
+        }
+        record(namespace, "redis", "miss");
+
+        value = loader.get();
+        if (value != null) {
+            localCache.put(cacheKey, value);
+            putRedis(cacheKey, value);
+        }
+        return value;
+    }
+
+    /**
+     * 地址规范化，去掉所有空白字符，使同一地址的不同写法命中同一缓存
+     * @param address
+     * @return
+     */
+    public static String normalize(String address) {
+        return address == null ? "" : address.replaceAll("[\\s\\u3000]+", "");
+    }
+
+    private String getFromRedis(String cacheKey) {
+        try {
+            return redisTemplate.opsForValue().get(cacheKey);
+        } catch (Exception e) {
+            //Redis不可用时降级为直接调用接口
+            log.warn("读取地理信息缓存失败：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void putRedis(String cacheKey, String value) {
+        try {
+            redisTemplate.opsForValue().set(cacheKey, value, redisTtl);
+        } catch (Exception e) {
+            log.warn("写入地理信息缓存失败：{}", e.getMessage());
+        }
+    }
+
+    private void record(String namespace, String tier, String result) {
+        meterRegistry.counter("sky.geo.cache", "namespace", namespace, "tier", tier, "result", result).increment();
+    }
+}
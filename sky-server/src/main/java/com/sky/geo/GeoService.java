@@ -0,0 +1,80 @@
+package com.sky.geo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 带缓存的地理信息服务，店铺坐标在启动时解析一次，offline方式下不创建，不访问百度地图
+ */
+@Service
+@ConditionalOnProperty(name = "sky.delivery.distance-provider", havingValue = "baidu", matchIfMissing = true)
+@Slf4j
+public class GeoService {
+
+    @Autowired
+    private BaiduMapClient baiduMapClient;
+
+    @Autowired
+    private GeoCache geoCache;
+
+    @Value("${sky.shop.address}")
+    private String shopAddress;
+
+    private volatile String shopLocation;
+
+    /**
+     * 应用启动后预先解析店铺坐标，失败时在第一次使用时重试
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resolveShopLocation() {
+        try {
+            getShopLocation();
+            log.info("店铺坐标解析完成：{}", shopLocation);
+        } catch (Exception e) {
+            log.warn("店铺坐标解析失败，将在下单时重试：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取店铺经纬度
+     * @return 经纬度，格式为 lng,lat；解析失败返回null
+     */
+    public String getShopLocation() {
+        String location = shopLocation;
+        if (location == null) {
+            location = geocode(shopAddress);
+            shopLocation = location;
+        }
+        return location;
+    }
+
+    /**
+     * 地址解析，按规范化后的地址缓存
+     * @param address
+     * @return 经纬度，格式为 lng,lat；解析失败返回null
+     */
+    public String geocode(String address) {
+        String normalized = GeoCache.normalize(address);
+        return geoCache.get(GeoCache.GEOCODE, normalized, () -> baiduMapClient.geocode(normalized));
+    }
+
+    /**
+     * 驾车距离，按起止坐标缓存
+     * @param origin
+     * @param destination
+     * @return 距离，单位：米；规划失败返回null
+     */
+    public Integer drivingDistance(String origin, String destination) {
+        String distance = geoCache.get(GeoCache.DISTANCE, origin + ":" + destination, () -> {
+            Integer meters = baiduMapClient.drivingDistance(origin, destination);
+            return meters == null ? null : meters.toString();
+        });
+        return distance == null ? null : Integer.valueOf(distance);
+    }
+}
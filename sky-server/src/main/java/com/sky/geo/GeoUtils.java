@@ -0,0 +1,41 @@
+package com.sky.geo;
+
+/**
+ * 经纬度计算工具类
+ */
+public final class GeoUtils {
+
+    //地球平均半径，单位：米
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * 计算两点之间的球面直线距离（半正矢公式）
+     * 百度返回的是BD-09坐标，同一城市内两点的偏移基本一致，对配送范围判断的误差在米级，可以忽略
+     * @param from 经纬度，格式为 lng,lat
+     * @param to 经纬度，格式为 lng,lat
+     * @return 距离，单位：米
+     */
+    public static double haversine(String from, String to) {
+        double[] a = parse(from);
+        double[] b = parse(to);
+        double lat1 = Math.toRadians(a[1]);
+        double lat2 = Math.toRadians(b[1]);
+        double dLat = lat2 - lat1;
+        double dLng = Math.toRadians(b[0] - a[0]);
+
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    private static double[] parse(String lngLat) {
+        int index = lngLat.indexOf(',');
+        return new double[]{
+                Double.parseDouble(lngLat.substring(0, index).trim()),
+                Double.parseDouble(lngLat.substring(index + 1).trim())
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package com.sky.geo;
+
+/**
+ * 地址解析，可替换为不同的地理编码实现，与DistanceProvider使用相同的配置切换
+ */
+public interface Geocoder {
+
+    /**
+     * 获取店铺经纬度
+     * @return 经纬度，格式为 lng,lat；解析失败返回null
+     */
+    String shopLocation();
+
+    /**
+     * 地址解析
+     * @param address
+     * @return 经纬度，格式为 lng,lat；解析失败返回null
+     */
+    String geocode(String address);
+}
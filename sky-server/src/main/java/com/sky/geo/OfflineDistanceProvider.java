@@ -0,0 +1,20 @@
+package com.sky.geo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 离线配送距离：直线距离乘以道路系数估算，不访问网络，用于压测和本地开发
+ */
+@Component
+@ConditionalOnProperty(name = "sky.delivery.distance-provider", havingValue = "offline")
+public class OfflineDistanceProvider implements DistanceProvider {
+
+    @Value("${sky.delivery.offline-road-factor:1.4}")
+    private double roadFactor;
+
+    public Integer distance(String origin, String destination) {
+        return (int) Math.round(GeoUtils.haversine(origin, destination) * roadFactor);
+    }
+}
@@ -0,0 +1,47 @@
+package com.sky.geo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 离线地址解析，不访问网络，用于压测和本地开发。
+ * 店铺坐标取自配置；收货地址本身是 lng,lat 格式时直接使用，
+ * 否则按地址哈希在店铺周围生成固定的坐标，同一地址每次得到相同的结果
+ */
+@Component
+@ConditionalOnProperty(name = "sky.delivery.distance-provider", havingValue = "offline")
+public class OfflineGeocoder implements Geocoder {
+
+    //纬度每度对应的距离，单位：米
+    private static final double METERS_PER_DEGREE = 111320;
+
+    @Value("${sky.delivery.offline-shop-location:116.403963,39.915119}")
+    private String shopLocation;
+
+    //生成坐标距店铺的最大直线距离，单位：米
+    @Value("${sky.delivery.offline-radius:6000}")
+    private double radius;
+
+    public String shopLocation() {
+        return shopLocation;
+    }
+
+    public String geocode(String address) {
+        String normalized = GeoCache.normalize(address);
+        if (normalized.matches("-?\\d+(\\.\\d+)?,-?\\d+(\\.\\d+)?")) {
+            return normalized;
+        }
+
+        int hash = normalized.hashCode();
+        double angle = Math.toRadians((hash & 0xFFFF) * 360.0 / 0x10000);
+        double distance = radius * ((hash >>> 16) & 0xFFFF) / 0xFFFF;
+
+        int index = shopLocation.indexOf(',');
+        double lng = Double.parseDouble(shopLocation.substring(0, index).trim());
+        double lat = Double.parseDouble(shopLocation.substring(index + 1).trim());
+        double dLat = distance * Math.cos(angle) / METERS_PER_DEGREE;
+        double dLng = distance * Math.sin(angle) / (METERS_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+        return String.format("%.6f,%.6f", lng + dLng, lat + dLat);
+    }
+}
@@ -0,0 +1,53 @@
+package com.sky.mapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import com.sky.entity.DailyBusinessStats;
+
+@Mapper
+public interface DailyBusinessStatsMapper {
+
+    /**
+     * 根据日期区间查询每日汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select * from daily_business_stats where stat_date >= #{begin} and stat_date <= #{end} order by stat_date")
+    List<DailyBusinessStats> listByDateRange(LocalDate begin, LocalDate end);
+
+    /**
+     * 增量累加汇总数据
+     * @param statDate
+     * @param orderCount
+     * @param validOrderCount
+     * @param cancelledOrderCount
+     * @param turnover
+     * @param newUsers
+     * @return 受影响行数，为0表示当日汇总行尚不存在
+     */
+    int increment(LocalDate statDate, int orderCount, int validOrderCount, int cancelledOrderCount,
+                  BigDecimal turnover, int newUsers);
+
+    /**
+     * 插入全零的汇总行，已存在时忽略
+     * @param statDate
+     */
+    @Insert("insert ignore into daily_business_stats (stat_date, update_time) values (#{statDate}, now())")
+    void insertIgnore(LocalDate statDate);
+
+    /**
+     * 根据订单表和用户表的原始数据重建某一天的汇总行
+     * @param statDate
+     * @param begin
+     * @param end
+     */
+    void rebuild(LocalDate statDate, LocalDateTime begin, LocalDateTime end);
+}
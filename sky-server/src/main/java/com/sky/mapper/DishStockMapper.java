@@ -0,0 +1,52 @@
+package com.sky.mapper;
+
+import java.time.LocalDate;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import com.sky.entity.DishStock;
+
+@Mapper
+public interface DishStockMapper {
+
+    /**
+     * 查询菜品某天的库存，没有记录表示不限量
+     * @param dishId
+     * @param stockDate
+     * @return
+     */
+    @Select("select * from dish_stock where dish_id = #{dishId} and stock_date = #{stockDate}")
+    DishStock getByDishIdAndDate(Long dishId, LocalDate stockDate);
+
+    /**
+     * 设置菜品某天的总库存
+     * @param dishStock
+     */
+    void upsertTotal(DishStock dishStock);
+
+    /**
+     * 从总库存中分配一批库存给当前节点，剩余库存不足时不分配
+     * @param dishId
+     * @param stockDate
+     * @param number
+     * @return 修改的行数，0表示剩余库存不足
+     */
+    int allocate(Long dishId, LocalDate stockDate, int number);
+
+    /**
+     * 归还当前节点未使用的库存
+     * @param dishId
+     * @param stockDate
+     * @param number
+     */
+    void deallocate(Long dishId, LocalDate stockDate, int number);
+
+    /**
+     * 累加已支付份数，退款时为负数
+     * @param dishId
+     * @param stockDate
+     * @param number
+     */
+    void addSold(Long dishId, LocalDate stockDate, int number);
+}
@@ -0,0 +1,50 @@
+package com.sky.mapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+
+import com.sky.entity.OrderEvent;
+
+@Mapper
+public interface OrderEventMapper {
+
+    /**
+     * 插入订单事件
+     * @param orderEvent
+     */
+    void insert(OrderEvent orderEvent);
+
+    /**
+     * 按写入顺序查询一批已到投递时间的事件
+     * 同一订单前面还有未投递（包括等待重试和投递失败）的事件时，后面的事件不会被查出，保证同一订单按顺序处理
+     * @param now
+     * @param limit
+     * @return
+     */
+    List<OrderEvent> getPending(LocalDateTime now, int limit);
+
+    /**
+     * 批量标记事件已投递
+     * @param ids
+     */
+    void markPublished(List<Long> ids);
+
+    /**
+     * 记录一次投递失败，失败次数达到上限后标记为投递失败，不再投递，否则在nextRetryTime重试
+     * @param id
+     * @param nextRetryTime
+     * @param maxAttempts
+     */
+    void markFailed(Long id, LocalDateTime nextRetryTime, int maxAttempts);
+
+    /**
+     * 删除指定时间之前已投递的事件
+     * @param publishTime
+     * @return 删除的行数
+     */
+    @Delete("delete from order_event where status = 1 and publish_time < #{publishTime} limit 1000")
+    int deletePublishedBefore(LocalDateTime publishTime);
+}
@@ -2,6 +2,7 @@ package com.sky.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -13,6 +14,7 @@ import com.github.pagehelper.Page;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.DailyStatisticsDTO;
 
 @Mapper
 public interface OrderMapper {
@@ -30,6 +32,13 @@ public interface OrderMapper {
      */
     @Select("select * from orders where number  = #{orderNumber} and user_id = #{userId}")
     Orders getByNumberAndUserId(String orderNumber, Long userId);
+
+    /**
+     * 根据订单号查询订单
+     * @param orderNumber
+     */
+    @Select("select * from orders where number = #{orderNumber}")
+    Orders getByNumber(String orderNumber);
     
     /**
      * 修改订单信息
@@ -64,6 +73,44 @@ public interface OrderMapper {
      */
     @Select("select * from orders where status = #{status} and order_time < #{orderTime}")
     List<Orders> getByStatusAndOrdertimeLT(Integer status, LocalDateTime orderTime);
+
+    /**
+     * 根据状态查询订单id和下单时间
+     * @param status
+     */
+    @Select("select id, order_time from orders where status = #{status}")
+    List<Orders> getByStatus(Integer status);
+
+    /**
+     * 根据状态和下单时间查询一批订单并加行锁，用于分批批量修改状态
+     * @param status
+     * @param orderTime
+     * @param limit
+     */
+    @Select("select * from orders where status = #{status} and order_time < #{orderTime} order by id limit #{limit} for update")
+    List<Orders> getByStatusAndOrdertimeLTForUpdate(Integer status, LocalDateTime orderTime, int limit);
+
+    /**
+     * 根据id批量修改订单状态，只修改仍处于原状态的订单
+     * @param ids
+     * @param fromStatus 原状态
+     * @param orders 需要修改的字段
+     * @return 修改的行数
+     */
+    int updateStatusByIds(List<Long> ids, Integer fromStatus, Orders orders);
+
+    /**
+     * 修改处于指定状态、指定支付状态的订单的支付状态
+     * @param id
+     * @param status 订单状态
+     * @param fromPayStatus 原支付状态
+     * @param payStatus 新支付状态
+     * @param checkoutTime 结账时间
+     * @return 修改的行数
+     */
+    @Update("update orders set pay_status = #{payStatus}, checkout_time = #{checkoutTime} "
+            + "where id = #{id} and status = #{status} and pay_status = #{fromPayStatus}")
+    int updatePayStatus(Long id, Integer status, Integer fromPayStatus, Integer payStatus, LocalDateTime checkoutTime);
     
 
     /**
@@ -84,4 +131,11 @@ public interface OrderMapper {
      * @param end
      */
     List<GoodsSalesDTO> getSalesTop10(LocalDateTime begin , LocalDateTime end);
+
+    /**
+     * 按天分组统计订单总数、有效订单数和营业额
+     * @param begin
+     * @param end
+     */
+    List<DailyStatisticsDTO> sumGroupByDay(LocalDateTime begin , LocalDateTime end);
 } 
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.sky.mapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import com.sky.entity.OrderRefund;
+
+@Mapper
+public interface OrderRefundMapper {
+
+    /**
+     * 保存退款申请，退款单号已存在时忽略
+     * @param orderRefund
+     * @return 插入的行数，0表示已经存在
+     */
+    int insertIgnore(OrderRefund orderRefund);
+
+    /**
+     * 根据订单id查询退款申请
+     * @param orderId
+     * @return
+     */
+    @Select("select * from order_refund where order_id = #{orderId}")
+    OrderRefund getByOrderId(Long orderId);
+
+    /**
+     * 查询已到申请时间的退款
+     * @param now
+     * @param limit
+     * @return
+     */
+    @Select("select * from order_refund where status = 0 and next_retry_time <= #{now} order by next_retry_time limit #{limit}")
+    List<OrderRefund> getDue(LocalDateTime now, int limit);
+
+    /**
+     * 领取一条已到申请时间的退款，领取后到leaseUntil之前不会被再次领取，处理中的节点宕机时到期后由其他节点重新领取
+     * @param id
+     * @param now
+     * @param leaseUntil
+     * @return 修改的行数，0表示已被其他线程领取
+     */
+    @Update("update order_refund set next_retry_time = #{leaseUntil}, update_time = #{now} "
+            + "where id = #{id} and status = 0 and next_retry_time <= #{now}")
+    int claim(Long id, LocalDateTime now, LocalDateTime leaseUntil);
+
+    /**
+     * 标记退款申请已受理
+     * @param id
+     * @param refundId 微信支付退款单号
+     */
+    @Update("update order_refund set status = 1, refund_id = #{refundId}, last_error = null, update_time = now() where id = #{id}")
+    void markSuccess(Long id, String refundId);
+
+    /**
+     * 记录一次申请失败，失败次数达到上限后标记为申请失败，否则在nextRetryTime重试
+     * @param id
+     * @param nextRetryTime
+     * @param lastError
+     * @param maxAttempts
+     */
+    void markRetry(Long id, LocalDateTime nextRetryTime, String lastError, int maxAttempts);
+
+    /**
+     * 推迟申请时间，不计入失败次数
+     * @param id
+     * @param nextRetryTime
+     */
+    @Update("update order_refund set next_retry_time = #{nextRetryTime}, update_time = now() where id = #{id} and status = 0")
+    void reschedule(Long id, LocalDateTime nextRetryTime);
+}
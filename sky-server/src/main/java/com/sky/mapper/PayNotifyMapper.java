@@ -0,0 +1,45 @@
+package com.sky.mapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import com.sky.entity.PayNotify;
+
+@Mapper
+public interface PayNotifyMapper {
+
+    /**
+     * 保存支付通知，交易号已存在时忽略
+     * @param payNotify
+     * @return 插入的行数，0表示重复的通知
+     */
+    int insertIgnore(PayNotify payNotify);
+
+    /**
+     * 查询收到时间早于指定时间、仍未处理的通知
+     * @param createTime
+     * @param maxAttempts 失败次数达到该值的通知不再查询
+     * @param limit
+     * @return
+     */
+    @Select("select * from pay_notify where status = 0 and create_time < #{createTime} and attempts < #{maxAttempts} order by id limit #{limit}")
+    List<PayNotify> getPending(LocalDateTime createTime, int maxAttempts, int limit);
+
+    /**
+     * 标记通知已处理
+     * @param id
+     */
+    @Update("update pay_notify set status = 1, process_time = now() where id = #{id} and status = 0")
+    void markProcessed(Long id);
+
+    /**
+     * 记录一次处理失败
+     * @param id
+     */
+    @Update("update pay_notify set attempts = attempts + 1 where id = #{id}")
+    void incrementAttempts(Long id);
+}
@@ -34,6 +34,12 @@ public interface ShoppingCartMapper {
     "values (#{name},#{userId},#{dishId},#{setmealId},#{dishFlavor},#{number},#{amount},#{image},#{createTime})")
     void insert (ShoppingCart shoppingCart);
 
+    /**
+     * 插入购物车数据，同一商品已存在时原子累加数量
+     * @param shoppingCart
+     */
+    void insertOrIncrement(ShoppingCart shoppingCart);
+
 
     /**
      * 清空购物车信息
@@ -2,8 +2,12 @@ package com.sky.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
+import java.time.LocalDateTime;
+import java.util.List;
 import  java.util.Map;
 
+import com.sky.dto.DailyStatisticsDTO;
+
 import com.sky.entity.User;
 
 
@@ -39,4 +43,12 @@ public interface UserMapper {
      */
     Integer countByMap(Map<String, Object> map);
 
+    /**
+     * 按天分组统计新增用户数量
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyStatisticsDTO> countGroupByDay(LocalDateTime begin, LocalDateTime end);
+
 }
@@ -0,0 +1,37 @@
+package com.sky.outbox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.OrderEvent;
+import com.sky.websocket.WebSocketBroadcaster;
+
+/**
+ * 通过WebSocket向管理端推送来单提醒和催单提醒
+ */
+@Component
+public class OrderAlertHandler implements OrderEventHandler {
+
+    @Autowired
+    private WebSocketBroadcaster webSocketBroadcaster;
+
+    @Override
+    public boolean supports(String type) {
+        return OrderEvent.PAID.equals(type) || OrderEvent.REMINDER.equals(type);
+    }
+
+    @Override
+    public void handle(OrderEvent event) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", OrderEvent.PAID.equals(event.getType()) ? 1 : 2);//1表示来单提醒，2表示用户催单
+        map.put("orderId", event.getOrderId());
+        map.put("content", "订单号：" + event.getOrderNumber());
+
+        //消息id取自事件id，重复投递的事件在各节点去重，不会重复提醒
+        webSocketBroadcaster.broadcast("order-event-" + event.getId(), event.getOrderId(), JSON.toJSONString(map));
+    }
+}
@@ -0,0 +1,22 @@
+package com.sky.outbox;
+
+import com.sky.entity.OrderEvent;
+
+/**
+ * 订单事件处理器，事件至少投递一次，同一订单的事件按写入顺序投递
+ */
+public interface OrderEventHandler {
+
+    /**
+     * 是否处理该类型的事件
+     * @param type 事件类型
+     * @return
+     */
+    boolean supports(String type);
+
+    /**
+     * 处理订单事件，同一事件可能被重复投递，处理失败时抛出异常，稍后重新投递
+     * @param event
+     */
+    void handle(OrderEvent event);
+}
@@ -0,0 +1,70 @@
+package com.sky.outbox;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.OrderEvent;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderEventMapper;
+
+/**
+ * 写入订单事件
+ * 需要在修改订单状态的事务中、修改订单之后调用：事件和订单状态一起提交或回滚，
+ * 同一订单的并发修改会等待行锁，后提交的事务写入的事件id更大，投递顺序与订单状态的变化顺序一致
+ */
+@Component
+public class OrderEventPublisher {
+
+    @Autowired
+    private OrderEventMapper orderEventMapper;
+
+    @Autowired
+    private OrderEventRelay orderEventRelay;
+
+    /**
+     * 写入订单事件，事务提交后通知投递任务立即投递
+     * @param type 事件类型
+     * @param orders 订单，需要包含id和订单号
+     */
+    public void publish(String type, Orders orders) {
+        publish(type, orders, null);
+    }
+
+    /**
+     * 写入带附加数据的订单事件
+     * @param type 事件类型
+     * @param orders 订单，需要包含id和订单号
+     * @param payload 附加数据
+     */
+    public void publish(String type, Orders orders, Map<String, Object> payload) {
+        LocalDateTime now = LocalDateTime.now();
+        OrderEvent orderEvent = OrderEvent.builder()
+                .orderId(orders.getId())
+                .orderNumber(orders.getNumber())
+                .type(type)
+                .payload(payload == null ? null : JSON.toJSONString(payload))
+                .status(OrderEvent.PENDING)
+                .attempts(0)
+                .nextRetryTime(now)
+                .createTime(now)
+                .build();
+        orderEventMapper.insert(orderEvent);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    orderEventRelay.wakeUp();
+                }
+            });
+        } else {
+            orderEventRelay.wakeUp();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.sky.outbox;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.sky.entity.OrderEvent;
+import com.sky.mapper.OrderEventMapper;
+import com.sky.task.TaskLease;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 订单事件投递任务
+ * 按id顺序批量读取待投递的事件，依次交给支持该类型的处理器，整批处理完后再批量标记为已投递，
+ * 标记之前节点宕机时事件会被重新投递（至少一次）；投递失败的事件按指数退避推迟重试，在它投递成功之前同一订单后续的事件都不会投递，
+ * 保证同一订单按顺序处理；失败次数达到上限的事件标记为投递失败并告警，人工处理前该订单后续的事件一直阻塞
+ * 集群中同一时刻只有持有租约的节点在投递，事务提交后会立即触发一次投递，另有定时轮询兜底
+ */
+@Component
+@Slf4j
+public class OrderEventRelay {
+
+    //只需要一个投递线程，投递进行中时最多再排队一次，多余的触发合并丢弃
+    private final ExecutorService executor = new ThreadPoolExecutor(1, 1,
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1),
+            r -> {
+                Thread thread = new Thread(r, "order-event-relay");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    @Autowired
+    private OrderEventMapper orderEventMapper;
+
+    @Autowired
+    private List<OrderEventHandler> handlers;
+
+    @Autowired
+    private TaskLease taskLease;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //每批投递的事件数量
+    @Value("${sky.order.outbox.batch-size:100}")
+    private int batchSize;
+
+    //投递失败达到该次数后不再投递
+    @Value("${sky.order.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    //投递失败后第一次重试的等待时间，之后每次翻倍
+    @Value("${sky.order.outbox.initial-backoff:PT1S}")
+    private Duration initialBackoff;
+
+    //重试等待时间的上限
+    @Value("${sky.order.outbox.max-backoff:PT5M}")
+    private Duration maxBackoff;
+
+    //已投递事件的保留时间
+    @Value("${sky.order.outbox.retention:P7D}")
+    private Duration retention;
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 触发一次投递，在后台线程执行
+     */
+    public void wakeUp() {
+        executor.execute(this::relay);
+    }
+
+    /**
+     * 定时投递，处理其他节点写入的事件和之前投递失败的事件
+     */
+    @Scheduled(fixedDelayString = "${sky.order.outbox.poll-interval:1000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    /**
+     * 每天凌晨清理已投递的事件
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void purge() {
+        taskLease.runExclusively("purgeOrderEvents", Duration.ofMinutes(30), Duration.ofMinutes(1), () -> {
+            LocalDateTime before = LocalDateTime.now().minus(retention);
+            int total = 0;
+            int rows;
+            do {
+                rows = orderEventMapper.deletePublishedBefore(before);
+                total += rows;
+            } while (rows > 0);
+            log.info("清理已投递的订单事件：{}条", total);
+        });
+    }
+
+    private void relay() {
+        try {
+            taskLease.runExclusively("relayOrderEvents", Duration.ofMinutes(1), Duration.ZERO, () -> {
+                List<OrderEvent> events;
+                int published;
+                //整批都投递失败时不再继续查询，等待下次轮询，避免接收方故障时空转
+                do {
+                    events = orderEventMapper.getPending(LocalDateTime.now(), batchSize);
+                    published = relayBatch(events);
+                } while (events.size() == batchSize && published > 0);
+            });
+        } catch (Exception e) {
+            log.error("投递订单事件失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 投递一批事件
+     * @return 投递成功的事件数量
+     */
+    private int relayBatch(List<OrderEvent> events) {
+        List<Long> published = new ArrayList<>();
+        //本批中投递失败的订单
+        Set<Long> blocked = new HashSet<>();
+        for (OrderEvent event : events) {
+            if (blocked.contains(event.getOrderId())) {
+                continue;
+            }
+            try {
+                dispatch(event);
+                published.add(event.getId());
+                record(event.getType(), "published");
+            } catch (RuntimeException e) {
+                blocked.add(event.getOrderId());
+                markFailed(event, e);
+            }
+        }
+        if (!published.isEmpty()) {
+            orderEventMapper.markPublished(published);
+        }
+        return published.size();
+    }
+
+    private void markFailed(OrderEvent event, RuntimeException e) {
+        int attempts = event.getAttempts() + 1;
+        LocalDateTime nextRetryTime = LocalDateTime.now().plus(backoff(event.getAttempts()));
+        orderEventMapper.markFailed(event.getId(), nextRetryTime, maxAttempts);
+        if (attempts >= maxAttempts) {
+            //投递失败的事件会阻塞同一订单后续的事件，需要人工处理后将状态改回0重新投递
+            log.error("订单事件投递失败{}次，不再重试，该订单后续事件将暂停投递，事件id：{}，订单id：{}，类型：{}",
+                    attempts, event.getId(), event.getOrderId(), event.getType(), e);
+            record(event.getType(), "dead");
+        } else {
+            log.warn("订单事件处理失败，{} 后重试，事件id：{}，订单id：{}，类型：{}：{}",
+                    nextRetryTime, event.getId(), event.getOrderId(), event.getType(), e.getMessage());
+            record(event.getType(), "failed");
+        }
+    }
+
+    /**
+     * 指数退避，在计算出的等待时间的一半到全部之间随机取值，避免大量事件同时重试
+     */
+    private Duration backoff(int attempts) {
+        long millis = initialBackoff.toMillis() << Math.min(attempts, 20);
+        millis = Math.min(millis, maxBackoff.toMillis());
+        return Duration.ofMillis(millis / 2 + ThreadLocalRandom.current().nextLong(millis / 2 + 1));
+    }
+
+    private void dispatch(OrderEvent event) {
+        for (OrderEventHandler handler : handlers) {
+            if (handler.supports(event.getType())) {
+                handler.handle(event);
+            }
+        }
+    }
+
+    private void record(String type, String result) {
+        meterRegistry.counter("sky.order.outbox", "type", type, "result", result).increment();
+    }
+}
@@ -0,0 +1,31 @@
+package com.sky.outbox;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.entity.OrderEvent;
+import com.sky.refund.RefundExecutor;
+
+/**
+ * 订单取消或拒单后申请退款
+ * 只保存退款申请，调用微信支付退款接口、失败重试由退款执行器处理，不会阻塞订单事件的投递
+ */
+@Component
+public class OrderRefundHandler implements OrderEventHandler {
+
+    @Autowired
+    private RefundExecutor refundExecutor;
+
+    @Override
+    public boolean supports(String type) {
+        return OrderEvent.REFUND.equals(type);
+    }
+
+    @Override
+    public void handle(OrderEvent event) {
+        JSONObject payload = event.getPayload() == null ? new JSONObject() : JSON.parseObject(event.getPayload());
+        refundExecutor.submit(event.getOrderId(), event.getOrderNumber(), payload.getBigDecimal("amount"));
+    }
+}
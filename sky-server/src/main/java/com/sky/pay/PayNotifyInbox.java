@@ -0,0 +1,238 @@
+package com.sky.pay;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.entity.PayNotify;
+import com.sky.mapper.PayNotifyMapper;
+import com.sky.service.OrderService;
+import com.sky.task.TaskLease;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 支付成功通知收件箱
+ * 微信支付会重复发送同一笔交易的通知，按交易号去重：依次检查进程内已处理集合、Redis已处理集合，
+ * 最后由pay_notify表的唯一索引兜底；通知写入数据库后即可响应微信，修改订单状态和来单提醒在后台线程处理，
+ * 未处理完成的通知（节点重启、队列已满、处理失败）由定时任务补偿
+ */
+@Component
+@Slf4j
+public class PayNotifyInbox {
+
+    private static final String SEEN_KEY_PREFIX = "sky:pay:notify:";
+
+    //补偿任务每次处理的通知数量
+    private static final int RECOVER_SIZE = 100;
+
+    //进程内已接收的交易号
+    private Cache<String, Boolean> seen;
+
+    //正在写入数据库的交易号，本节点收到的重复通知等待同一个结果
+    private final Map<String, CompletableFuture<Boolean>> accepting = new ConcurrentHashMap<>();
+
+    //后台处理线程，队列满时由补偿任务处理
+    private final ExecutorService executor = new ThreadPoolExecutor(2, 4,
+            60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(1000),
+            r -> {
+                Thread thread = new Thread(r, "pay-notify");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    @Autowired
+    private PayNotifyMapper payNotifyMapper;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private RedisTemplate<String, String> stringRedisTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private TaskLease taskLease;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //Redis中已接收交易号的保留时间，微信支付的重试在这段时间之内
+    @Value("${sky.pay.notify.seen-ttl:P1D}")
+    private Duration seenTtl;
+
+    //进程内已接收交易号的容量
+    @Value("${sky.pay.notify.local-max-size:10000}")
+    private long localMaxSize;
+
+    //收到通知后超过这段时间仍未处理的由补偿任务处理
+    @Value("${sky.pay.notify.recover-after:PT1M}")
+    private Duration recoverAfter;
+
+    //处理失败达到该次数后不再补偿，需要人工处理
+    @Value("${sky.pay.notify.max-attempts:10}")
+    private int maxAttempts;
+
+    @PostConstruct
+    public void init() {
+        seen = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(seenTtl)
+                .build();
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        //队列中尚未处理的通知已写入数据库，由其他节点或重启后的补偿任务处理
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 接收支付成功通知，通知写入数据库后返回，调用方即可响应微信
+     * 写入失败时抛出异常，调用方应响应失败让微信重试
+     * @param transactionId 微信支付交易号
+     * @param outTradeNo 商户平台订单号
+     * @return 是否为首次收到的通知
+     */
+    public boolean accept(String transactionId, String outTradeNo) {
+        if (seen.getIfPresent(transactionId) != null) {
+            record("duplicate");
+            return false;
+        }
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = accepting.putIfAbsent(transactionId, future);
+        if (existing != null) {
+            //同一笔交易的通知正在写入，等待写入结果，写入失败时一起响应失败
+            join(existing);
+            record("duplicate");
+            return false;
+        }
+
+        try {
+            boolean first = save(transactionId, outTradeNo);
+            seen.put(transactionId, Boolean.TRUE);
+            future.complete(first);
+            return first;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            accepting.remove(transactionId, future);
+        }
+    }
+
+    /**
+     * 补偿处理未完成的通知
+     */
+    @Scheduled(fixedDelayString = "${sky.pay.notify.recover-interval:30000}")
+    public void recover() {
+        taskLease.runExclusively("recoverPayNotify", Duration.ofMinutes(5), Duration.ZERO, () -> {
+            List<PayNotify> pending = payNotifyMapper.getPending(LocalDateTime.now().minus(recoverAfter), maxAttempts, RECOVER_SIZE);
+            if (!pending.isEmpty()) {
+                log.info("补偿处理支付通知：{}条", pending.size());
+                pending.forEach(this::process);
+            }
+        });
+    }
+
+    /**
+     * 检查Redis已接收集合，未收到过时写入数据库并提交后台处理
+     */
+    private boolean save(String transactionId, String outTradeNo) {
+        String key = SEEN_KEY_PREFIX + transactionId;
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(key))) {
+                record("duplicate");
+                return false;
+            }
+        } catch (Exception e) {
+            //Redis不可用时由数据库唯一索引去重
+            log.warn("查询支付通知去重标记失败：{}", e.getMessage());
+        }
+
+        PayNotify payNotify = PayNotify.builder()
+                .transactionId(transactionId)
+                .outTradeNo(outTradeNo)
+                .status(PayNotify.PENDING)
+                .attempts(0)
+                .createTime(LocalDateTime.now())
+                .build();
+        int rows = payNotifyMapper.insertIgnore(payNotify);
+
+        //通知已经落库，去重标记写入失败不影响结果
+        try {
+            stringRedisTemplate.opsForValue().set(key, outTradeNo, seenTtl);
+        } catch (Exception e) {
+            log.warn("写入支付通知去重标记失败：{}", e.getMessage());
+        }
+
+        if (rows == 0) {
+            record("duplicate");
+            return false;
+        }
+        record("accepted");
+        submit(payNotify);
+        return true;
+    }
+
+    private void submit(PayNotify payNotify) {
+        try {
+            executor.execute(() -> process(payNotify));
+        } catch (RejectedExecutionException e) {
+            log.warn("支付通知处理队列已满，交易号：{} 等待补偿处理", payNotify.getTransactionId());
+        }
+    }
+
+    /**
+     * 修改订单状态并标记通知已处理，订单只会从待付款修改为待接单，重复处理没有副作用
+     */
+    private void process(PayNotify payNotify) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                orderService.paySuccess(payNotify.getOutTradeNo());
+                payNotifyMapper.markProcessed(payNotify.getId());
+            });
+            record("processed");
+        } catch (RuntimeException e) {
+            log.error("处理支付通知失败，交易号：{}，订单号：{}", payNotify.getTransactionId(), payNotify.getOutTradeNo(), e);
+            payNotifyMapper.incrementAttempts(payNotify.getId());
+            record("failed");
+        }
+    }
+
+    private void join(CompletableFuture<Boolean> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("sky.pay.notify", "result", result).increment();
+    }
+}
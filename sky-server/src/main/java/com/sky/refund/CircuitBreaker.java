@@ -0,0 +1,74 @@
+package com.sky.refund;
+
+/**
+ * 熔断器
+ * 连续失败达到阈值后打开，打开期间直接拒绝调用；打开时间结束后进入半开状态，只放行一次试探调用，
+ * 试探成功则关闭，失败则重新打开
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    //连续失败多少次后打开
+    private final int failureThreshold;
+
+    //打开状态持续的时间，单位：毫秒
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+
+    private int failures;
+
+    //打开的时间
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 是否允许调用，半开状态下只允许一次试探调用
+     * @return
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 距离可以再次试探调用还有多久，单位：毫秒，关闭状态下为0
+     * @return
+     */
+    public synchronized long remainingOpenMillis() {
+        if (state == State.CLOSED) {
+            return 0;
+        }
+        return Math.max(0, openedAt + openMillis - System.currentTimeMillis());
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
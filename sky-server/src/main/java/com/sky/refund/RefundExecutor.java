@@ -0,0 +1,231 @@
+package com.sky.refund;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.entity.OrderRefund;
+import com.sky.mapper.OrderRefundMapper;
+import com.sky.task.TaskLease;
+import com.sky.utils.WeChatPayUtil;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 退款执行器
+ * 退款申请先保存到order_refund表，再由独立的有界线程池调用微信支付退款接口，支付网关变慢时只占用退款线程，不影响其他请求；
+ * 申请失败按指数退避重试，网关连续失败时熔断，熔断期间的退款推迟到熔断结束后再申请；
+ * 线程池已满或节点重启时，未完成的退款由定时任务重新调度
+ */
+@Component
+@Slf4j
+public class RefundExecutor {
+
+    //定时任务每次调度的退款数量上限
+    private static final int DISPATCH_SIZE = 50;
+
+    //熔断期间推迟申请的最短时间，单位：毫秒
+    private static final long MIN_RESCHEDULE_MILLIS = 1000;
+
+    private ThreadPoolExecutor executor;
+
+    private CircuitBreaker circuitBreaker;
+
+    private Timer gatewayTimer;
+
+    @Autowired
+    private OrderRefundMapper orderRefundMapper;
+    @Autowired
+    private WeChatPayUtil weChatPayUtil;
+    @Autowired
+    private TaskLease taskLease;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //退款线程数和等待队列长度
+    @Value("${sky.refund.pool-size:4}")
+    private int poolSize;
+
+    @Value("${sky.refund.queue-capacity:100}")
+    private int queueCapacity;
+
+    //申请失败达到该次数后不再重试，需要人工处理
+    @Value("${sky.refund.max-attempts:8}")
+    private int maxAttempts;
+
+    //第一次重试的等待时间，之后每次翻倍，不超过最长等待时间
+    @Value("${sky.refund.initial-backoff:PT10S}")
+    private Duration initialBackoff;
+
+    @Value("${sky.refund.max-backoff:PT30M}")
+    private Duration maxBackoff;
+
+    //领取退款后超过这段时间仍未完成，视为处理节点已宕机，由其他节点重新领取
+    @Value("${sky.refund.processing-timeout:PT2M}")
+    private Duration processingTimeout;
+
+    //连续失败多少次后熔断，以及熔断持续的时间
+    @Value("${sky.refund.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${sky.refund.breaker.open-duration:PT30S}")
+    private Duration openDuration;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(poolSize, poolSize,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "refund");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        circuitBreaker = new CircuitBreaker(failureThreshold, openDuration.toMillis());
+        gatewayTimer = meterRegistry.timer("sky.refund.gateway");
+        meterRegistry.gauge("sky.refund.queue", executor, e -> e.getQueue().size());
+        meterRegistry.gauge("sky.refund.breaker.open", circuitBreaker,
+                breaker -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0 : 1);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        //未完成的退款在领取超时后由其他节点或重启后重新调度
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 保存退款申请并提交后台执行，同一订单重复提交时只保存一次
+     * @param orderId
+     * @param orderNumber
+     * @param amount 订单金额
+     */
+    public void submit(Long orderId, String orderNumber, BigDecimal amount) {
+        LocalDateTime now = LocalDateTime.now();
+        OrderRefund orderRefund = OrderRefund.builder()
+                .orderId(orderId)
+                .orderNumber(orderNumber)
+                .outRefundNo(orderNumber)
+                .amount(amount)
+                .status(OrderRefund.PENDING)
+                .attempts(0)
+                .nextRetryTime(now)
+                .createTime(now)
+                .updateTime(now)
+                .build();
+        if (orderRefundMapper.insertIgnore(orderRefund) == 0) {
+            log.info("订单：{} 的退款申请已存在", orderNumber);
+            return;
+        }
+        dispatch(orderRefund);
+    }
+
+    /**
+     * 调度已到申请时间的退款，包括等待重试、熔断推迟和之前未能提交到线程池的退款
+     */
+    @Scheduled(fixedDelayString = "${sky.refund.dispatch-interval:5000}")
+    public void dispatchDue() {
+        taskLease.runExclusively("dispatchRefunds", Duration.ofMinutes(1), Duration.ZERO, () -> {
+            int capacity = executor.getQueue().remainingCapacity();
+            if (capacity == 0) {
+                return;
+            }
+            orderRefundMapper.getDue(LocalDateTime.now(), Math.min(capacity, DISPATCH_SIZE)).forEach(this::dispatch);
+        });
+    }
+
+    /**
+     * 领取退款后提交到线程池
+     */
+    private void dispatch(OrderRefund orderRefund) {
+        LocalDateTime now = LocalDateTime.now();
+        if (orderRefundMapper.claim(orderRefund.getId(), now, now.plus(processingTimeout)) == 0) {
+            return;
+        }
+        try {
+            executor.execute(() -> process(orderRefund));
+        } catch (RejectedExecutionException e) {
+            //线程池已满，放回待申请状态，等待定时任务调度
+            orderRefundMapper.reschedule(orderRefund.getId(), now);
+            record("rejected");
+        }
+    }
+
+    private void process(OrderRefund orderRefund) {
+        if (!circuitBreaker.tryAcquire()) {
+            long delay = Math.max(circuitBreaker.remainingOpenMillis(), MIN_RESCHEDULE_MILLIS);
+            orderRefundMapper.reschedule(orderRefund.getId(), LocalDateTime.now().plus(Duration.ofMillis(delay)));
+            record("short-circuited");
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            //支付时固定支付0.01元，退款金额与之一致
+            String response = weChatPayUtil.refund(
+                    orderRefund.getOrderNumber(),
+                    orderRefund.getOutRefundNo(),
+                    new BigDecimal(0.01),
+                    new BigDecimal(0.01));
+            JSONObject jsonObject = JSON.parseObject(response);
+            //退款接口调用失败时返回错误码
+            if (jsonObject == null || jsonObject.getString("code") != null) {
+                throw new IllegalStateException(response);
+            }
+            circuitBreaker.onSuccess();
+            orderRefundMapper.markSuccess(orderRefund.getId(), jsonObject.getString("refund_id"));
+            log.info("申请退款成功，订单号：{}，响应：{}", orderRefund.getOrderNumber(), response);
+            record("success");
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            int attempts = orderRefund.getAttempts() + 1;
+            LocalDateTime nextRetryTime = LocalDateTime.now().plus(backoff(orderRefund.getAttempts()));
+            orderRefundMapper.markRetry(orderRefund.getId(), nextRetryTime, abbreviate(e.getMessage()), maxAttempts);
+            if (attempts >= maxAttempts) {
+                log.error("申请退款失败{}次，不再重试，订单号：{}", attempts, orderRefund.getOrderNumber(), e);
+            } else {
+                log.warn("申请退款失败，订单号：{}，{} 后重试：{}", orderRefund.getOrderNumber(), nextRetryTime, e.getMessage());
+            }
+            record("failed");
+        } finally {
+            gatewayTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 指数退避，在计算出的等待时间的一半到全部之间随机取值，避免大量退款同时重试
+     */
+    private Duration backoff(int attempts) {
+        long millis = initialBackoff.toMillis() << Math.min(attempts, 20);
+        millis = Math.min(millis, maxBackoff.toMillis());
+        return Duration.ofMillis(millis / 2 + ThreadLocalRandom.current().nextLong(millis / 2 + 1));
+    }
+
+    private String abbreviate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("sky.refund", "result", result).increment();
+    }
+}
@@ -0,0 +1,60 @@
+package com.sky.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+
+public interface DailyBusinessStatsService {
+    /**
+     * 新订单产生，累加当日订单总数
+     * @param orders
+     */
+    void orderCreated(Orders orders);
+
+    /**
+     * 订单完成，累加有效订单数和营业额
+     * @param orders 完成前的订单数据，需要包含下单时间和金额
+     */
+    void orderCompleted(Orders orders);
+
+    /**
+     * 订单取消，累加已取消订单数
+     * @param orders 取消前的订单数据，需要包含下单时间
+     */
+    void orderCancelled(Orders orders);
+
+    /**
+     * 批量订单完成，按下单日期合并后累加
+     * @param ordersList
+     */
+    void ordersCompleted(List<Orders> ordersList);
+
+    /**
+     * 批量订单取消，按下单日期合并后累加
+     * @param ordersList
+     */
+    void ordersCancelled(List<Orders> ordersList);
+
+    /**
+     * 新用户注册，累加当日新增用户数
+     * @param user
+     */
+    void userRegistered(User user);
+
+    /**
+     * 根据原始数据重建某一天的汇总数据
+     * @param date
+     */
+    void rebuild(LocalDate date);
+
+    /**
+     * 查询日期区间内每天的汇总数据，缺失的日期和尚未重建过的历史日期会先从原始数据重建
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyBusinessStats> listByDateRange(LocalDate begin, LocalDate end);
+}
@@ -4,6 +4,7 @@ import java.util.List;
 
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
+import com.sky.dto.DishStockDTO;
 import com.sky.entity.Dish;
 import com.sky.result.PageResult;
 import com.sky.vo.DishVO;
@@ -80,4 +81,10 @@ public interface DishService {
      * @param id
      */
     void startOrStop(Integer status, Long id);
+
+    /**
+     * 设置菜品当天的库存
+     * @param dishStockDTO
+     */
+    void setStock(DishStockDTO dishStockDTO);
 }
@@ -8,6 +8,7 @@ import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.dto.OrdersPaymentDTO;
 import com.sky.dto.OrdersRejectionDTO;
 import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.OrderRefund;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.vo.OrderPaymentVO;
@@ -33,7 +34,7 @@ public interface OrderService {
     OrderPaymentVO payment(OrdersPaymentDTO ordersPaymentDTO) throws Exception;
 
     /**
-     * 支付成功，修改订单状态
+     * 支付成功，修改订单状态，订单已不是待付款状态时忽略，可以重复调用
      * @param outTradeNo
      */
     void paySuccess(String outTradeNo);
@@ -113,4 +114,11 @@ public interface OrderService {
      * @param id
      */
     void reminder(Long id);
+
+    /**
+     * 查询订单的退款申请
+     * @param orderId
+     * @return
+     */
+    OrderRefund getRefund(Long orderId);
 }
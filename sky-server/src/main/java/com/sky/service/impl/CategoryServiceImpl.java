@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuSnapshotCache;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
@@ -39,6 +40,9 @@ public class CategoryServiceImpl implements CategoryService {
     @Autowired
     private SetmealMapper setmealMapper;
 
+    @Autowired
+    private MenuSnapshotCache menuSnapshotCache;
+
     /**
      * 新增分类
      * @param categoryDTO 分类信息
@@ -72,6 +76,9 @@ public class CategoryServiceImpl implements CategoryService {
         
         // 调用mapper保存分类信息
         categoryMapper.insert(category);
+
+        // 清理用户端分类快照
+        menuSnapshotCache.evict(MenuSnapshotCache.CATEGORY);
     }
 
     /**
@@ -113,6 +120,9 @@ public class CategoryServiceImpl implements CategoryService {
         
         // 执行删除操作
         categoryMapper.deleteById(id);
+
+        // 清理用户端分类快照
+        menuSnapshotCache.evict(MenuSnapshotCache.CATEGORY);
     }
 
     /**
@@ -144,6 +154,9 @@ public class CategoryServiceImpl implements CategoryService {
         
         // 执行更新操作
         categoryMapper.update(category);
+
+        // 清理用户端分类快照
+        menuSnapshotCache.evict(MenuSnapshotCache.CATEGORY);
     }
 
     /**
@@ -165,6 +178,9 @@ public class CategoryServiceImpl implements CategoryService {
         
         // 执行更新操作
         categoryMapper.update(category);
+
+        // 清理用户端分类快照
+        menuSnapshotCache.evict(MenuSnapshotCache.CATEGORY);
     }
 
     /**
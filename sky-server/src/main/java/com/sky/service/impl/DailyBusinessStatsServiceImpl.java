@@ -0,0 +1,218 @@
+package com.sky.service.impl;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.service.DailyBusinessStatsService;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 每日营业数据汇总，随订单状态流转和用户注册增量维护。
+ * 增量在业务事务提交后先合并到内存中，再定时按日期批量写入，避免订单事务持有当日汇总行的行锁
+ */
+@Service
+@Slf4j
+public class DailyBusinessStatsServiceImpl implements DailyBusinessStatsService {
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+
+    //尚未写入数据库的增量，key为统计日期
+    private final Map<LocalDate, Delta> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 新订单产生，累加当日订单总数
+     * @param orders
+     */
+    public void orderCreated(Orders orders) {
+        add(orders.getOrderTime().toLocalDate(), new Delta(1, 0, 0, BigDecimal.ZERO, 0));
+    }
+
+    /**
+     * 订单完成，累加有效订单数和营业额
+     * @param orders
+     */
+    public void orderCompleted(Orders orders) {
+        BigDecimal amount = orders.getAmount() == null ? BigDecimal.ZERO : orders.getAmount();
+        add(orders.getOrderTime().toLocalDate(), new Delta(0, 1, 0, amount, 0));
+    }
+
+    /**
+     * 订单取消，累加已取消订单数
+     * @param orders
+     */
+    public void orderCancelled(Orders orders) {
+        add(orders.getOrderTime().toLocalDate(), new Delta(0, 0, 1, BigDecimal.ZERO, 0));
+    }
+
+    /**
+     * 批量订单完成，按下单日期合并后累加
+     * @param ordersList
+     */
+    public void ordersCompleted(List<Orders> ordersList) {
+        Map<LocalDate, Delta> deltas = new HashMap<>();
+        for (Orders orders : ordersList) {
+            BigDecimal amount = orders.getAmount() == null ? BigDecimal.ZERO : orders.getAmount();
+            deltas.merge(orders.getOrderTime().toLocalDate(), new Delta(0, 1, 0, amount, 0), Delta::plus);
+        }
+        deltas.forEach(this::add);
+    }
+
+    /**
+     * 批量订单取消，按下单日期合并后累加
+     * @param ordersList
+     */
+    public void ordersCancelled(List<Orders> ordersList) {
+        Map<LocalDate, Delta> deltas = new HashMap<>();
+        for (Orders orders : ordersList) {
+            deltas.merge(orders.getOrderTime().toLocalDate(), new Delta(0, 0, 1, BigDecimal.ZERO, 0), Delta::plus);
+        }
+        deltas.forEach(this::add);
+    }
+
+    /**
+     * 新用户注册，累加当日新增用户数
+     * @param user
+     */
+    public void userRegistered(User user) {
+        add(user.getCreateTime().toLocalDate(), new Delta(0, 0, 0, BigDecimal.ZERO, 1));
+    }
+
+    /**
+     * 定时将内存中合并的增量写入数据库，每个日期一条update
+     */
+    @Scheduled(fixedDelayString = "${sky.stats.flush-interval:1000}")
+    public void flush() {
+        for (LocalDate date : pending.keySet()) {
+            Delta delta = pending.remove(date);
+            if (delta == null) {
+                continue;
+            }
+            try {
+                apply(date, delta);
+            } catch (Exception e) {
+                //写入失败时放回，下一轮与新的增量合并后重试
+                log.error("写入每日营业数据汇总失败：{}，{}", date, e.getMessage());
+                pending.merge(date, delta, Delta::plus);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    /**
+     * 根据原始数据重建某一天的汇总数据
+     * @param date
+     */
+    public void rebuild(LocalDate date) {
+        log.info("重建每日营业数据汇总：{}", date);
+        //已提交的增量包含在原始数据中，丢弃尚未写入的部分，避免重建后重复累加
+        pending.remove(date);
+        dailyBusinessStatsMapper.rebuild(date, LocalDateTime.of(date, LocalTime.MIN), LocalDateTime.of(date, LocalTime.MAX));
+    }
+
+    /**
+     * 查询日期区间内每天的汇总数据。缺失的日期，以及当天结束后还没有根据原始数据重建过的历史日期，
+     * 会先从原始数据重建，只做过增量累加的汇总行可能缺少汇总行创建前的数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    public List<DailyBusinessStats> listByDateRange(LocalDate begin, LocalDate end) {
+        List<DailyBusinessStats> list = dailyBusinessStatsMapper.listByDateRange(begin, end);
+        Map<LocalDate, DailyBusinessStats> existing = new HashMap<>();
+        list.forEach(stats -> existing.put(stats.getStatDate(), stats));
+
+        LocalDate today = LocalDate.now();
+        boolean rebuilt = false;
+        for (LocalDate date = begin; !date.isAfter(end) && !date.isAfter(today); date = date.plusDays(1)) {
+            DailyBusinessStats stats = existing.get(date);
+            if (stats == null || date.isBefore(today) && !rebuiltAfterDayEnded(stats)) {
+                rebuild(date);
+                rebuilt = true;
+            }
+        }
+        return rebuilt ? dailyBusinessStatsMapper.listByDateRange(begin, end) : list;
+    }
+
+    private boolean rebuiltAfterDayEnded(DailyBusinessStats stats) {
+        return stats.getRebuildTime() != null
+                && !stats.getRebuildTime().isBefore(stats.getStatDate().plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * 存在事务时在提交后合并增量，事务回滚则不计入
+     */
+    private void add(LocalDate date, Delta delta) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pending.merge(date, delta, Delta::plus);
+                }
+            });
+        } else {
+            pending.merge(date, delta, Delta::plus);
+        }
+    }
+
+    /**
+     * 累加到汇总行，汇总行不存在时先插入全零行再累加。
+     * 进程异常退出时未写入的增量会丢失，由BusinessStatsTask对账时重建修正
+     */
+    private void apply(LocalDate date, Delta delta) {
+        int rows = dailyBusinessStatsMapper.increment(date, delta.orderCount, delta.validOrderCount,
+                delta.cancelledOrderCount, delta.turnover, delta.newUsers);
+        if (rows == 0) {
+            dailyBusinessStatsMapper.insertIgnore(date);
+            dailyBusinessStatsMapper.increment(date, delta.orderCount, delta.validOrderCount,
+                    delta.cancelledOrderCount, delta.turnover, delta.newUsers);
+        }
+    }
+
+    /**
+     * 某一天待累加的汇总数据
+     */
+    private static final class Delta {
+        private final int orderCount;
+        private final int validOrderCount;
+        private final int cancelledOrderCount;
+        private final BigDecimal turnover;
+        private final int newUsers;
+
+        private Delta(int orderCount, int validOrderCount, int cancelledOrderCount, BigDecimal turnover, int newUsers) {
+            this.orderCount = orderCount;
+            this.validOrderCount = validOrderCount;
+            this.cancelledOrderCount = cancelledOrderCount;
+            this.turnover = turnover;
+            this.newUsers = newUsers;
+        }
+
+        private Delta plus(Delta other) {
+            return new Delta(orderCount + other.orderCount, validOrderCount + other.validOrderCount,
+                    cancelledOrderCount + other.cancelledOrderCount, turnover.add(other.turnover),
+                    newUsers + other.newUsers);
+        }
+    }
+}
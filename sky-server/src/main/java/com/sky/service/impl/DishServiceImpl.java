@@ -1,12 +1,21 @@
 package com.sky.service.impl;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import com.sky.aspect.AutoFillAspect;
+import com.sky.cache.CatalogCache;
+import com.sky.cache.DishCache;
+import com.sky.cache.MenuSnapshotCache;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.MessageConstant;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,12 +24,15 @@ import com.github.pagehelper.PageHelper;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
+import com.sky.dto.DishStockDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.DishFlavor;
+import com.sky.entity.DishStock;
 import com.sky.entity.Setmeal;
 import com.sky.exception.DeletionNotAllowedException;
 import com.sky.mapper.DishFlavorMapper;
 import com.sky.mapper.DishMapper;
+import com.sky.mapper.DishStockMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
@@ -51,7 +63,15 @@ public class DishServiceImpl implements DishService {
     private SetmealMapper setmealMapper;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private DishCache dishCache;
+    @Autowired
+    private MenuSnapshotCache menuSnapshotCache;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private CatalogCache catalogCache;
+    @Autowired
+    private DishStockMapper dishStockMapper;
 
     DishServiceImpl(AliOssUtil aliOssUtil, AutoFillAspect autoFillAspect) {
         this.aliOssUtil = aliOssUtil;
@@ -82,8 +102,7 @@ public class DishServiceImpl implements DishService {
         }
 
         //清理缓存数据
-        String key = "dish_" + dishDTO.getCategoryId();
-        cleanCache(key);
+        cleanCache(dishDTO.getCategoryId());
     }
 
     /**
@@ -117,7 +136,7 @@ public class DishServiceImpl implements DishService {
 
     @Override
     public void deleteBatch(List<Long> ids) {
-        //判断当前菜品是否能够删除---是否存在起售中的菜品
+        //判断当前菜品是否能够删除---是否存在起售中的菜品，直接查询数据库，不使用缓存
         for(Long id : ids){
             Dish dish = dishMapper.getById(id);
             if(dish.getStatus() == StatusConstant.ENABLE){
@@ -136,8 +155,9 @@ public class DishServiceImpl implements DishService {
             dishFlavorMapper.deleteByDishId(id);
         }
         
-        //将所有的菜品缓存数据清理掉，所有以dish_开头的key
-        cleanCache("dish_*");
+        //将所有的菜品缓存数据清理掉，递增缓存版本号使所有dish_开头的key失效
+        cleanCache(null);
+        catalogCache.evictDishes(ids);
     }
 
     /**
@@ -149,7 +169,7 @@ public class DishServiceImpl implements DishService {
     @Override
     public DishVO getByIdWithFLavor(Long id) {
         //查询菜品基本信息
-        Dish dish = dishMapper.getById(id);
+        Dish dish = catalogCache.getDish(id);
 
         //查询菜品口味信息
         List<DishFlavor> dishFlavors = dishFlavorMapper.getById (id);
@@ -183,8 +203,15 @@ public class DishServiceImpl implements DishService {
         }
 
         //清理缓存数据
-        String key = "dish_" + dishDTO.getCategoryId();
-        cleanCache(key);
+        cleanCache(dishDTO.getCategoryId());
+        catalogCache.evictDishes(Collections.singletonList(dishDTO.getId()));
+
+        //套餐包含的菜品图片、描述来自菜品表，清理包含该菜品的套餐缓存
+        List<Long> setmealIds = SetmealDishMapper.getSetmealIdsByDishIds(Collections.singletonList(dishDTO.getId()));
+        if (setmealIds != null && setmealIds.size() > 0) {
+            Cache setmealDishCache = cacheManager.getCache(CacheConstant.SETMEAL_DISH_CACHE);
+            setmealIds.forEach(setmealDishCache::evict);
+        }
     }
 
     /**
@@ -205,15 +232,20 @@ public class DishServiceImpl implements DishService {
     public List<DishVO> listWithFlavor(Dish dish) {
         List<Dish> dishList = dishMapper.list(dish);
         List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList == null || dishList.isEmpty()) {
+            return dishVOList;
+        }
+
+        //一次查询出所有菜品的口味，再按菜品id分组
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
+
         for(Dish d : dishList){
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
-
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
-            dishVO.setFlavors(flavors);
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);
-
          }
         return dishVOList;
     }
@@ -245,18 +277,41 @@ public class DishServiceImpl implements DishService {
                             .build();
                     setmealMapper.update(setmeal);
                 }
+                //套餐状态随之变化，套餐可能属于不同分类，清理全部套餐列表缓存和套餐快照
+                cacheManager.getCache(CacheConstant.SETMEAL_CACHE).clear();
+                menuSnapshotCache.evict(MenuSnapshotCache.SETMEAL);
+                catalogCache.evictSetmeals(setmealIds);
             }
         }
 
-        //将所有的菜品缓存数据清理掉，所有以dish_开头的key
-        cleanCache("dish_*");
+        //将所有的菜品缓存数据清理掉，递增缓存版本号使所有dish_开头的key失效
+        cleanCache(null);
+        catalogCache.evictDishes(Collections.singletonList(id));
+    }
+
+    /**
+     * 设置菜品当天的库存，各节点检查到库存记录后开始限量售卖
+     * @param dishStockDTO
+     */
+    public void setStock(DishStockDTO dishStockDTO) {
+        DishStock dishStock = DishStock.builder()
+                .dishId(dishStockDTO.getDishId())
+                .stockDate(LocalDate.now())
+                .total(dishStockDTO.getTotal())
+                .build();
+        dishStockMapper.upsertTotal(dishStock);
     }
 
     /**
      * 清理缓存数据
-     * @param pattern
+     * @param categoryId 分类id，为null时清理全部菜品缓存
      */
-    private void cleanCache(String pattern){
-        redisTemplate.delete(redisTemplate.keys(pattern));
+    private void cleanCache(Long categoryId){
+        //同时通知所有节点清理进程内缓存
+        if (categoryId == null) {
+            dishCache.evictAll();
+        } else {
+            dishCache.evict(categoryId);
+        }
     }
 }
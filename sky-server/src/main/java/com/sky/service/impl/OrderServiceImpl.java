@@ -3,6 +3,7 @@ package com.sky.service.impl;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,15 +11,14 @@ import java.util.stream.Collectors;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cart.ShoppingCartStore;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.OrdersCancelDTO;
@@ -29,26 +29,31 @@ import com.sky.dto.OrdersRejectionDTO;
 import com.sky.dto.OrdersSubmitDTO;
 import com.sky.entity.AddressBook;
 import com.sky.entity.OrderDetail;
+import com.sky.entity.OrderEvent;
+import com.sky.entity.OrderRefund;
 import com.sky.entity.Orders;
 import com.sky.entity.ShoppingCart;
 import com.sky.entity.User;
 import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.geo.DeliveryRangeChecker;
 import com.sky.mapper.AddressBookMapper;
 import com.sky.mapper.OrderDetailMapper;
 import com.sky.mapper.OrderMapper;
-import com.sky.mapper.ShoppingCartMapper;
+import com.sky.mapper.OrderRefundMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.outbox.OrderEventPublisher;
 import com.sky.result.PageResult;
+import com.sky.service.DailyBusinessStatsService;
+import com.sky.stock.StockLedger;
 import com.sky.service.OrderService;
-import com.sky.utils.HttpClientUtil;
+import com.sky.task.PaymentTimeoutQueue;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
-import com.sky.websocket.WebSocketServer;
 
 import org.springframework.util.CollectionUtils;
 
@@ -74,26 +79,37 @@ public class OrderServiceImpl implements OrderService {
     private OrderDetailMapper orderDetailMapper;
     
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartStore shoppingCartStore;
     
     @Autowired
     private AddressBookMapper addressBookMapper;
     
-    @Value("${sky.baidu.ak}")
-    private String ak;
-    
-    @Value("${sky.shop.address}")
-    private String shopAddress;
+    @Autowired
+    private DeliveryRangeChecker deliveryRangeChecker;
     
     @Autowired
-    private WebSocketServer webSocketServer;
+    private OrderEventPublisher orderEventPublisher;
+
+    @Autowired
+    private OrderRefundMapper orderRefundMapper;
+
+    @Autowired
+    private DailyBusinessStatsService dailyBusinessStatsService;
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private PaymentTimeoutQueue paymentTimeoutQueue;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     /**
      * 用户下单
+     * 在订单事务开始前预占库存，从数据库分配库存时不会占用订单事务的连接和行锁
      * @param ordersSubmitDTO
      * @return
      */
-    @Transactional
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
         //异常情况处理（收获地址为空、超出配送范围、购物车为空）
         AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
@@ -102,17 +118,33 @@ public class OrderServiceImpl implements OrderService {
         }
 
         //检查用户的收货地址是否超出配送范围
-        checkOutOfRange(addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail());
+        deliveryRangeChecker.check(addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail());
 
         //查询当前用户购物车数据
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = shoppingCartStore.list(userId);
         if (shoppingCartList == null || shoppingCartList.isEmpty()) {
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
 
+        //预占菜品库存，库存不足时不能下单；下单失败时归还
+        Map<Long, Integer> quantities = shoppingCartList.stream()
+                .filter(cart -> cart.getDishId() != null)
+                .collect(Collectors.groupingBy(ShoppingCart::getDishId, Collectors.summingInt(ShoppingCart::getNumber)));
+        stockLedger.reserve(quantities);
+        try {
+            return transactionTemplate.execute(status -> createOrder(ordersSubmitDTO, addressBook, userId, shoppingCartList));
+        } catch (RuntimeException e) {
+            stockLedger.unreserve(quantities);
+            throw e;
+        }
+    }
+
+    /**
+     * 保存订单和订单明细，清理购物车
+     */
+    private OrderSubmitVO createOrder(OrdersSubmitDTO ordersSubmitDTO, AddressBook addressBook, Long userId,
+                                      List<ShoppingCart> shoppingCartList) {
         //向订单表插入一条数据
         Orders order = new Orders();
         BeanUtils.copyProperties(ordersSubmitDTO, order);
@@ -122,10 +154,13 @@ public class OrderServiceImpl implements OrderService {
         order.setNumber(String.valueOf(System.currentTimeMillis()));
         order.setUserId(userId);
         order.setOrderTime(LocalDateTime.now());
-        order.setPayStatus(Orders.PENDING_PAYMENT);
-        order.setStatus(Orders.UN_PAID);
+        order.setPayStatus(Orders.UN_PAID);
+        order.setStatus(Orders.PENDING_PAYMENT);
 
         orderMapper.insert(order);
+        dailyBusinessStatsService.orderCreated(order);
+        //加入支付超时延迟队列，到期仍未支付则自动取消
+        paymentTimeoutQueue.schedule(order.getId(), order.getOrderTime());
 
         //订单明细数据
         List<OrderDetail> orderDetailList = new ArrayList<>();
@@ -138,8 +173,8 @@ public class OrderServiceImpl implements OrderService {
         //插入N条数据
         orderDetailMapper.insertBatch(orderDetailList);
 
-        //清理购物车中的数据
-        shoppingCartMapper.deleteByUserId(userId);
+        //清理购物车中的数据，订单提交成功后才清理
+        shoppingCartStore.clear(userId);
 
         //封装返回结果
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
@@ -192,11 +227,14 @@ public class OrderServiceImpl implements OrderService {
      * 支付成功，修改订单服务
      * @param outTradeNo
      */
+    @Transactional
     public void paySuccess(String outTradeNo) {
-        //当前登录用户
-        Long userId = BaseContext.getCurrentId();
-        //根据订单号查询当前用户的订单
-        Orders ordersDB = orderMapper.getByNumberAndUserId(outTradeNo, userId);
+        //支付回调没有登录用户，根据订单号查询订单
+        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+        if (ordersDB == null) {
+            log.warn("支付成功的订单不存在，订单号：{}", outTradeNo);
+            return;
+        }
 
         //根据订单id更新订单的状态、支付方式、支付状态、结账时间
         Orders orders = Orders.builder()
@@ -206,15 +244,37 @@ public class OrderServiceImpl implements OrderService {
             .checkoutTime(LocalDateTime.now())
             .build();
 
-        orderMapper.update(orders);
-        
-        Map<String, Object> map = new HashMap<>();
-        map.put("type", 1);//消息类型，1表示来单提醒
-        map.put("orderId", orders.getId());
-        map.put("content", "订单号：" + outTradeNo);
+        //只修改仍处于待付款状态的订单，重复的支付通知不会重复修改订单和发送来单提醒
+        int rows = orderMapper.updateStatusByIds(Collections.singletonList(ordersDB.getId()), Orders.PENDING_PAYMENT, orders);
+        if (rows == 0) {
+            paidAfterLeavingPending(outTradeNo, ordersDB.getId());
+            return;
+        }
+        //来单提醒随订单状态一起提交，由后台任务通过WebSocket推送给集群内所有节点的管理端
+        orderEventPublisher.publish(OrderEvent.PAID, ordersDB);
+        paymentTimeoutQueue.remove(orders.getId());
+        stockLedger.confirm(ordersDB);
+    }
 
-        // 通过WebSocket给管理端发送消息，提醒有新的订单
-        webSocketServer.sendToAllClient(JSON.toJSONString(map));
+    /**
+     * 订单已不是待付款状态时收到支付通知
+     * 已支付、已退款的订单是重复通知，直接忽略；订单已被超时取消或用户取消、尚未支付时，用户已经付款却没有订单，
+     * 记录为已支付并申请退款
+     */
+    private void paidAfterLeavingPending(String outTradeNo, Long orderId) {
+        Orders ordersDB = orderMapper.getById(orderId);
+        //已支付或已退款的订单收到的是重复通知
+        if (!Orders.CANCELLED.equals(ordersDB.getStatus()) || !Orders.UN_PAID.equals(ordersDB.getPayStatus())) {
+            log.info("订单已不是待付款状态，忽略支付通知，订单号：{}，状态：{}", outTradeNo, ordersDB.getStatus());
+            return;
+        }
+        //按原支付状态条件更新，同一笔交易的重复通知只申请一次退款
+        int rows = orderMapper.updatePayStatus(orderId, Orders.CANCELLED, Orders.UN_PAID, Orders.PAID, LocalDateTime.now());
+        if (rows == 0) {
+            return;
+        }
+        log.warn("订单取消后才收到支付通知，申请退款，订单号：{}", outTradeNo);
+        publishRefund(ordersDB);
     }
 
     /**
@@ -237,15 +297,13 @@ public class OrderServiceImpl implements OrderService {
         
         List<OrderVO> list = new ArrayList<>();
 
-        //查询出订单明细，并封装入OrderVO进行响应
+        //批量查询出本页订单的明细，并封装入OrderVO进行响应
         if(page != null && page.getTotal() > 0) {
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(page.getResult());
             for (Orders orders : page) {
-                Long orderId = orders.getId();//订单id
-
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orderId);
-                orderVO.setOrderDetailList(orderDetailList);
+                orderVO.setOrderDetailList(orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>()));
                 list.add(orderVO);
             }
         }
@@ -277,6 +335,7 @@ public class OrderServiceImpl implements OrderService {
      * 用户取消订单
      * @param id
      */
+    @Transactional
     public void userCancelById(Long id) throws Exception {
         //根据id 查询订单
         Orders ordersDB = orderMapper.getById(id);
@@ -295,15 +354,8 @@ public class OrderServiceImpl implements OrderService {
         orders.setId(ordersDB.getId());
 
         //订单处于待接单状态下取消，需要进行退款
-        if (ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
-            //调用微信支付退款接口
-            weChatPayUtil.refund(
-                ordersDB.getNumber(), 
-                ordersDB.getNumber(), 
-                new BigDecimal(0.01), 
-                new BigDecimal(0.01)
-            );
-
+        boolean refund = ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED);
+        if (refund) {
             //支付状态修改为已退款
             orders.setPayStatus(Orders.REFUND);
         }
@@ -311,7 +363,18 @@ public class OrderServiceImpl implements OrderService {
         orders.setStatus(Orders.CANCELLED);
         orders.setCancelReason("用户取消");
         orders.setCancelTime(LocalDateTime.now());
-        orderMapper.update(orders);
+        //按原状态条件更新，和超时取消等并发修改同一订单时只有一方成功，库存和统计不会重复归还
+        int rows = orderMapper.updateStatusByIds(Collections.singletonList(ordersDB.getId()), ordersDB.getStatus(), orders);
+        if (rows == 0) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        orderEventPublisher.publish(OrderEvent.CANCELLED, ordersDB);
+        if (refund) {
+            //退款在订单取消提交后由后台任务提交给退款执行器
+            publishRefund(ordersDB);
+        }
+        dailyBusinessStatsService.orderCancelled(ordersDB);
+        stockLedger.release(ordersDB);
     }
 
     /**
@@ -325,19 +388,20 @@ public class OrderServiceImpl implements OrderService {
         //根据订单id查询当前订单详情
         List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(id);
 
-        //将订单详情对象转换为购物车对象
-        List<ShoppingCart> shoppingCartList = orderDetailList.stream().map(x -> {
+        //将订单详情对象转换为购物车对象，按原数量加入购物车
+        orderDetailList.forEach(x -> {
             ShoppingCart shoppingCart = new ShoppingCart();
             
             //将原订单详情里面的菜品信息重新赋值到购物车对象中
             BeanUtils.copyProperties(x, shoppingCart, "id");
             shoppingCart.setUserId(userId);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            return shoppingCart;
-        }).collect(Collectors.toList());
-
-        //将购物车对象批量插入购物车表
-        shoppingCartMapper.insertBatch(shoppingCartList);
+            //快照会被购物车修改，每次单独创建，不复用shoppingCart
+            shoppingCartStore.add(shoppingCart, x.getNumber(), () -> {
+                ShoppingCart snapshot = new ShoppingCart();
+                BeanUtils.copyProperties(x, snapshot, "id");
+                return snapshot;
+            });
+        });
     }
 
     /**
@@ -370,11 +434,13 @@ public class OrderServiceImpl implements OrderService {
 
         List<Orders> ordersList = page.getResult();
         if (!CollectionUtils.isEmpty(ordersList)) {
+            // 一次查询出本页所有订单的菜品详情，再按订单id分组
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
             for (Orders orders : ordersList) {
                 // 将共同字段复制到OrderVO
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                String orderDishes = getOrderDishesStr(orders);
+                String orderDishes = getOrderDishesStr(orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>()));
 
                 // 将订单菜品信息封装到orderVO中，并添加到orderVOList
                 orderVO.setOrderDishes(orderDishes);
@@ -385,14 +451,25 @@ public class OrderServiceImpl implements OrderService {
     }
 
     /**
-     * 根据订单id获取菜品信息字符串
-     * @param orders
+     * 批量查询订单明细，并按订单id分组
+     * @param ordersList
      * @return
      */
-    private String getOrderDishesStr(Orders orders) {
-        // 查询订单菜品详情信息（订单中的菜品和数量）
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        if (orderIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderIds(orderIds);
+        return orderDetailList.stream().collect(Collectors.groupingBy(OrderDetail::getOrderId));
+    }
 
+    /**
+     * 根据订单明细获取菜品信息字符串
+     * @param orderDetailList
+     * @return
+     */
+    private String getOrderDishesStr(List<OrderDetail> orderDetailList) {
         // 将每一条订单菜品信息拼接为字符串（格式：宫保鸡丁*3；）
         List<String> orderDishList = orderDetailList.stream().map(x -> {
             String orderDish = x.getName() + "*" + x.getNumber() + ";";
@@ -426,18 +503,26 @@ public class OrderServiceImpl implements OrderService {
      * 接单
      * @param ordersConfirmDTO
      */
+    @Transactional
     public void confirm(OrdersConfirmDTO ordersConfirmDTO) {
+        Orders ordersDB = orderMapper.getById(ordersConfirmDTO.getId());
+        if (ordersDB == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+
         Orders orders = Orders.builder()
             .id(ordersConfirmDTO.getId())
             .status(Orders.CONFIRMED)
             .build();
         orderMapper.update(orders);
+        orderEventPublisher.publish(OrderEvent.CONFIRMED, ordersDB);
     }
 
     /**
      * 拒单
      * @param ordersRejectionDTO
      */
+    @Transactional
     public void rejection(OrdersRejectionDTO ordersRejectionDTO) throws Exception {
         //根据id查询订单
         Orders ordersDB = orderMapper.getById(ordersRejectionDTO.getId());
@@ -447,18 +532,6 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
 
-        //支付状态
-        Integer payStatus = ordersDB.getPayStatus();
-        if (payStatus == Orders.PAID) {
-            //用户已支付，需要退款
-            String refund = weChatPayUtil.refund(
-                ordersDB.getNumber(),
-                ordersDB.getNumber(),
-                new BigDecimal(0.01),
-                new BigDecimal(0.01));
-            log.info("申请退款：{}", refund);
-        }
-
         //拒单需要退款，根据订单id更新订单状态、拒单原因、取消时间
         Orders orders = new Orders();
         orders.setId(ordersDB.getId());
@@ -466,13 +539,25 @@ public class OrderServiceImpl implements OrderService {
         orders.setRejectionReason(ordersRejectionDTO.getRejectionReason());
         orders.setCancelTime(LocalDateTime.now());
 
-        orderMapper.update(orders);
+        //按原状态条件更新，和超时取消等并发修改同一订单时只有一方成功，库存和统计不会重复归还
+        int rows = orderMapper.updateStatusByIds(Collections.singletonList(ordersDB.getId()), ordersDB.getStatus(), orders);
+        if (rows == 0) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        orderEventPublisher.publish(OrderEvent.REJECTED, ordersDB);
+        if (Orders.PAID.equals(ordersDB.getPayStatus())) {
+            //用户已支付，拒单提交后由后台任务申请退款
+            publishRefund(ordersDB);
+        }
+        dailyBusinessStatsService.orderCancelled(ordersDB);
+        stockLedger.release(ordersDB);
     }
 
     /**
      * 取消订单
      * @param ordersCancelDTO
      */
+    @Transactional
     public void cancel(OrdersCancelDTO ordersCancelDTO) throws Exception {
         //根据id查询订单
         Orders ordersDB = orderMapper.getById(ordersCancelDTO.getId());
@@ -485,18 +570,6 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
 
-        //支付状态
-        Integer payStatus = ordersDB.getPayStatus();
-        if (payStatus == 1) {
-            //用户已支付，需要退款
-            String refund = weChatPayUtil.refund(
-                ordersDB.getNumber(),
-                ordersDB.getNumber(),
-                new BigDecimal(0.01),
-                new BigDecimal(0.01));
-            log.info("申请退款：{}", refund);
-        }
-
         //管理端取消订单需要退款，根据订单id更新订单状态、取消原因、取消时间
         Orders orders = new Orders();
         orders.setId(ordersCancelDTO.getId());
@@ -504,13 +577,25 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelReason(ordersCancelDTO.getCancelReason());
         orders.setCancelTime(LocalDateTime.now());
 
-        orderMapper.update(orders);
+        //按原状态条件更新，和超时取消等并发修改同一订单时只有一方成功，库存和统计不会重复归还
+        int rows = orderMapper.updateStatusByIds(Collections.singletonList(ordersDB.getId()), ordersDB.getStatus(), orders);
+        if (rows == 0) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        orderEventPublisher.publish(OrderEvent.CANCELLED, ordersDB);
+        if (Orders.PAID.equals(ordersDB.getPayStatus())) {
+            //用户已支付，取消提交后由后台任务申请退款
+            publishRefund(ordersDB);
+        }
+        dailyBusinessStatsService.orderCancelled(ordersDB);
+        stockLedger.release(ordersDB);
     }
 
     /**
      * 派送订单
      * @param id
      */
+    @Transactional
     public void delivery(Long id) {
         //根据id查询订单
         Orders ordersDB = orderMapper.getById(id);
@@ -527,12 +612,14 @@ public class OrderServiceImpl implements OrderService {
         orders.setStatus(Orders.DELIVERY_IN_PROGRESS);
 
         orderMapper.update(orders);
+        orderEventPublisher.publish(OrderEvent.DELIVERY, ordersDB);
     }
 
     /**
      * 完成订单
      * @param id
      */
+    @Transactional
     public void complete(Long id) {
         //根据id查询订单
         Orders ordersDB = orderMapper.getById(id);
@@ -549,68 +636,8 @@ public class OrderServiceImpl implements OrderService {
         orders.setDeliveryTime(LocalDateTime.now());
 
         orderMapper.update(orders);
-    }
-
-    /**
-     * 检查客户的收货地址是否超出配送范围
-     * @param address
-     */
-    private void checkOutOfRange(String address) {
-        Map<String, String> map = new HashMap<>();
-        map.put("address", shopAddress);
-        map.put("output", "json");
-        map.put("ak", ak);
-        String shopCoordinate = HttpClientUtil.doGet("http://api.map.baidu.com/geocoding/v3", map);
-        JSONObject jsonObject = JSON.parseObject(shopCoordinate);
-
-        if (!jsonObject.getString("status").equals("0")) {
-            throw new OrderBusinessException("店铺地址解析失败");
-        }
-
-        //数据解析
-        JSONObject result = jsonObject.getJSONObject("result");
-        JSONObject location = result.getJSONObject("location");
-        String lng = location.getString("lng");
-        String lat = location.getString("lat");
-        //店铺经纬度
-        String shopLngLat = lng + "," + lat;
-
-        //查询客户的坐标
-        map.put("address", address);
-        String userCoordinate = HttpClientUtil.doGet("http://api.map.baidu.com/geocoding/v3", map);
-        jsonObject = JSON.parseObject(userCoordinate);
-        if (!jsonObject.getString("status").equals("0")) {
-            throw new OrderBusinessException("收货地址解析失败");
-        }
-
-        //数据解析
-        result = jsonObject.getJSONObject("result");
-        location = result.getJSONObject("location");
-        lng = location.getString("lng");
-        lat = location.getString("lat");
-        //客户经纬度
-        String userLngLat = lng + "," + lat;
-
-        //解析店铺和客户的距离
-        map.put("origin", shopLngLat);
-        map.put("destinations", userLngLat);
-        map.put("steps_info", "0");
-
-        //路线规划
-        String json = HttpClientUtil.doGet("http://api.map.baidu.com/directionlite/v1/driving", map);
-        jsonObject = JSON.parseObject(json);
-        if (!jsonObject.getString("status").equals("0")) {
-            throw new OrderBusinessException("路线规划失败");
-        }
-
-        //数据解析
-        result = jsonObject.getJSONObject("result");
-        JSONArray jsonArray = result.getJSONArray("routes");
-        Integer distance = (Integer) ((JSONObject) jsonArray.get(0)).get("distance");
-
-        if (distance > 5000) {
-            throw new OrderBusinessException("超出配送范围");
-        }
+        orderEventPublisher.publish(OrderEvent.COMPLETED, ordersDB);
+        dailyBusinessStatsService.orderCompleted(ordersDB);
     }
 
     /**
@@ -624,12 +651,28 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
         }
 
-       //基于WebSocket实现催单
-       Map map = new HashMap<>();
-       map.put("type", 2);//2代表用户催单
-       map.put("orderId",id);
-       map.put("content","订单号：" + orders.getNumber());
-       webSocketServer.sendToAllClient(JSON.toJSONString(map));
+        //催单提醒由后台任务通过WebSocket推送给管理端
+        orderEventPublisher.publish(OrderEvent.REMINDER, orders);
+    }
+
+    /**
+     * 查询订单的退款申请
+     * @param orderId
+     * @return
+     */
+    public OrderRefund getRefund(Long orderId) {
+        OrderRefund orderRefund = orderRefundMapper.getByOrderId(orderId);
+        if (orderRefund == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_REFUND_NOT_FOUND);
+        }
+        return orderRefund;
     }
 
+    /**
+     * 写入退款事件，事务提交后保存退款申请，由退款执行器在后台申请退款
+     * @param ordersDB
+     */
+    private void publishRefund(Orders ordersDB) {
+        orderEventPublisher.publish(OrderEvent.REFUND, ordersDB, Collections.singletonMap("amount", ordersDB.getAmount()));
+    }
 }
@@ -18,7 +18,6 @@ import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
 import com.sky.service.ReportService;
@@ -32,6 +31,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.OrderReportVO;
 import com.sky.vo.SalesTop10ReportVO;
+import com.sky.dto.DailyStatisticsDTO;
 import com.sky.dto.GoodsSalesDTO;
 
 import lombok.extern.slf4j.Slf4j;
@@ -66,16 +66,12 @@ public class ReportServiceImpl implements ReportService{
             dateList.add(begin);
         }
 
+        //一次分组查询取回区间内每天的营业额，没有订单的日期补0
+        Map<LocalDate, DailyStatisticsDTO> dailyMap = getOrderDailyMap(dateList);
         List<Double> turnoverList = new ArrayList<>();
         for(LocalDate date : dateList){
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-            Map<String, Object> map = new HashMap<>();
-            map.put("status",Orders.COMPLETED);
-            map.put("begin",beginTime);
-            map.put("end",endTime);
-            Double turnover = orderMapper.sumByMap(map);
-            turnover = turnover == null ? 0.0 : turnover;
+            DailyStatisticsDTO daily = dailyMap.get(date);
+            Double turnover = daily == null || daily.getAmount() == null ? 0.0 : daily.getAmount();
             turnoverList.add(turnover);
             }
 
@@ -98,13 +94,19 @@ public class ReportServiceImpl implements ReportService{
             List<Integer> newUserList = new ArrayList<>(); //新增用户数量
             List<Integer> totalUserList = new ArrayList<>(); //总用户数
 
+            //区间开始前的用户总数，作为累计的基数 select count(id) from user where create_time < ?
+            Integer totalUser = getUserCount(null, LocalDateTime.of(dateList.get(0).minusDays(1), LocalTime.MAX));
+            totalUser = totalUser == null ? 0 : totalUser;
+
+            //新增用户数量 select date(create_time), count(id) from user where create_time > ? and create_time < ? group by date(create_time)
+            Map<LocalDate, DailyStatisticsDTO> dailyMap = toDailyMap(userMapper.countGroupByDay(
+                    LocalDateTime.of(dateList.get(0), LocalTime.MIN),
+                    LocalDateTime.of(dateList.get(dateList.size() - 1), LocalTime.MAX)));
+
             for(LocalDate date : dateList)  {
-                LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-                LocalDateTime endTime = LocalDateTime.of(date,LocalTime.MAX);
-                //新增用户数量 select count(id) from user where create_time > ? and create_time < ?
-                Integer newUser = getUserCount(beginTime ,endTime);
-                //总用户数量 select count(id) from user where create_time < ?
-                Integer totalUser = getUserCount(null ,endTime);
+                DailyStatisticsDTO daily = dailyMap.get(date);
+                Integer newUser = daily == null ? 0 : daily.getCount();
+                totalUser += newUser;
 
                 newUserList.add(newUser);
                 totalUserList.add(totalUser);
@@ -151,16 +153,12 @@ public class ReportServiceImpl implements ReportService{
             List<Integer> orderCountList = new ArrayList<>();
             //每天有效订单数集合
             List<Integer> validOrderCountList = new ArrayList<>();
+            //select date(order_time), count(id), sum(status = 5) from orders where order_time > ? and order_time < ? group by date(order_time)
+            Map<LocalDate, DailyStatisticsDTO> dailyMap = getOrderDailyMap(dateList);
             for (LocalDate date : dateList) {
-                LocalDateTime beginTime  = LocalDateTime.of(date,LocalTime.MIN);
-                LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-            //查询每天的总订单数量 select count(id) from orders where order_time > ? and order_time < ?
-                Integer orderCount = getOrderCount(beginTime,endTime,null);
-
-            //查询每天的有效订单数 select count(id) from orders where order_time > ? and order_time < ? and status = ?
-                Integer validOrderCount = getOrderCount(beginTime,endTime,Orders.COMPLETED);
-                orderCountList.add(orderCount);
-                validOrderCountList.add(validOrderCount);
+                DailyStatisticsDTO daily = dailyMap.get(date);
+                orderCountList.add(daily == null ? 0 : daily.getCount());
+                validOrderCountList.add(daily == null ? 0 : daily.getValidCount());
             }
             //时间区间内的总订单数量
             Integer totalOrderCount = orderCountList.stream().reduce(Integer::sum).get();
@@ -181,19 +179,30 @@ public class ReportServiceImpl implements ReportService{
                 .build();
         }
 
-        /**
-         * 根据时间区间统计订单数量
-         * @param beginTime
-         * @param endTime
-         * @param status
-         * @return
-         */
-    private Integer getOrderCount(LocalDateTime beginTime ,LocalDateTime endTime ,Integer status){
-        Map<String, Object> map = new HashMap<>();
-        map.put("begin",beginTime);
-        map.put("end",endTime);
-        map.put("status",status);
-        return orderMapper.countByMap(map);
+    /**
+     * 按天分组查询日期列表覆盖区间内的订单统计数据
+     * @param dateList
+     * @return
+     */
+    private Map<LocalDate, DailyStatisticsDTO> getOrderDailyMap(List<LocalDate> dateList){
+        LocalDateTime beginTime = LocalDateTime.of(dateList.get(0), LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(dateList.get(dateList.size() - 1), LocalTime.MAX);
+        return toDailyMap(orderMapper.sumGroupByDay(beginTime, endTime));
+    }
+
+    /**
+     * 将分组统计结果按日期建立索引，便于补齐没有数据的日期
+     * @param dailyList
+     * @return
+     */
+    private Map<LocalDate, DailyStatisticsDTO> toDailyMap(List<DailyStatisticsDTO> dailyList){
+        Map<LocalDate, DailyStatisticsDTO> dailyMap = new HashMap<>();
+        if(dailyList != null){
+            for(DailyStatisticsDTO daily : dailyList){
+                dailyMap.put(daily.getDate(), daily);
+            }
+        }
+        return dailyMap;
     }
 
     /**
@@ -1,14 +1,24 @@
 package com.sky.service.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CatalogCache;
+import com.sky.cache.MenuSnapshotCache;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -42,6 +52,12 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealDishMapper setmealDishMapper;
     @Autowired
     private DishMapper dishMapper;
+    @Autowired
+    private MenuSnapshotCache menuSnapshotCache;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private CatalogCache catalogCache;
 
     /**
      * 新增套餐，同时需要保存套餐和菜品的关联关系
@@ -64,6 +80,8 @@ public class SetmealServiceImpl implements SetmealService {
         });
         //保存套餐和菜品的关系
         setmealDishMapper.insertBatch(setmealDishes);
+
+        cleanCache(Collections.singletonList(setmeal.getCategoryId()), Collections.emptyList());
     }
 
     /**
@@ -86,13 +104,16 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Transactional
     public void deleteBatch(List<Long> ids) {
+        List<Long> categoryIds = new ArrayList<>();
         ids.forEach(id -> {
+            //删除校验直接查询数据库，不使用缓存
             Setmeal setmeal = setmealMapper.getById(id);
             if(StatusConstant.ENABLE == setmeal.getStatus()){
                 //起售中的套餐不能删除
                 throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE);
     
             }
+            categoryIds.add(setmeal.getCategoryId());
         });
 
         ids.forEach(setmealId -> {
@@ -102,6 +123,8 @@ public class SetmealServiceImpl implements SetmealService {
             setmealDishMapper.deleteBySetmealId(setmealId);
             
         });
+
+        cleanCache(categoryIds, ids);
     }
 
     /**
@@ -111,7 +134,7 @@ public class SetmealServiceImpl implements SetmealService {
      * @return
      */
     public SetmealVO getByIdWithDish(Long id) {
-        Setmeal setmeal = setmealMapper.getById(id);
+        Setmeal setmeal = catalogCache.getSetmeal(id);
         List<SetmealDish> setmealDishes = setmealDishMapper.getBySetmealId(id);
         SetmealVO setmealVO = new SetmealVO();
         BeanUtils.copyProperties(setmeal,setmealVO);
@@ -127,6 +150,9 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Transactional
     public void update(SetmealDTO setmealDTO) {
+        //修改前的分类，修改了分类时原分类的缓存也需要清理
+        Setmeal oldSetmeal = setmealMapper.getById(setmealDTO.getId());
+
         Setmeal setmeal = new Setmeal();
         BeanUtils.copyProperties(setmealDTO,setmeal);
         //修改套餐表，执行update
@@ -143,6 +169,13 @@ public class SetmealServiceImpl implements SetmealService {
         //重新插入套餐和菜品的关联关系
         setmealDishMapper.insertBatch(setmealDishes);
 
+        List<Long> categoryIds = new ArrayList<>();
+        categoryIds.add(setmealDTO.getCategoryId());
+        if (oldSetmeal != null) {
+            categoryIds.add(oldSetmeal.getCategoryId());
+        }
+        cleanCache(categoryIds, Collections.singletonList(setmealId));
+
     }
 
     /**
@@ -169,13 +202,20 @@ public class SetmealServiceImpl implements SetmealService {
         .status(status)
         .build();
         setmealMapper.update(setmeal);
+
+        Setmeal current = setmealMapper.getById(id);
+        if (current != null) {
+            cleanCache(Collections.singletonList(current.getCategoryId()), Collections.singletonList(id));
+        }
     }
 
     /**
-     * 条件查询
+     * 条件查询，用户端按分类查询起售套餐时走缓存
      * @param setmeal
      * @return
      */
+    @Cacheable(value = CacheConstant.SETMEAL_CACHE, key = "#setmeal.categoryId",
+            condition = "#setmeal.categoryId != null && #setmeal.status == 1 && #setmeal.name == null")
     public List<Setmeal> list(Setmeal setmeal) {
        List<Setmeal> list = setmealMapper.list(setmeal);
        return list;
@@ -186,8 +226,26 @@ public class SetmealServiceImpl implements SetmealService {
      * @param id
      *  @return
      */
+    @Cacheable(value = CacheConstant.SETMEAL_DISH_CACHE, key = "#id")
     public List<DishItemVO> getDishItemById(Long id) {
         return setmealMapper.getDishItemBySetmealId(id);
     }
+
+    /**
+     * 清理套餐缓存，存在事务时在事务提交后清理
+     * @param categoryIds 需要清理套餐列表的分类id
+     * @param setmealIds 发生变更的套餐id
+     */
+    private void cleanCache(Collection<Long> categoryIds, Collection<Long> setmealIds) {
+        Cache setmealCache = cacheManager.getCache(CacheConstant.SETMEAL_CACHE);
+        categoryIds.stream().filter(Objects::nonNull).distinct().forEach(setmealCache::evict);
+
+        Cache setmealDishCache = cacheManager.getCache(CacheConstant.SETMEAL_DISH_CACHE);
+        setmealIds.forEach(setmealDishCache::evict);
+        catalogCache.evictSetmeals(setmealIds);
+
+        //redis缓存清理之后再清理菜单快照
+        menuSnapshotCache.evict(MenuSnapshotCache.SETMEAL);
+    }
     
 }
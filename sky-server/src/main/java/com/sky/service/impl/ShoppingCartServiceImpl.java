@@ -1,20 +1,18 @@
 package com.sky.service.impl;
-import java.time.LocalDateTime;
 import java.util.List;
 import org.springdoc.core.models.GroupedOpenApi;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.sky.cache.CatalogCache;
+import com.sky.cart.ShoppingCartStore;
 import com.sky.context.BaseContext;
 import com.sky.controller.admin.CategoryController;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.ShoppingCartMapper;
-import com.sky.mapper.SetmealMapper;
 import com.sky.service.ShoppingCartService;
 
 @Service
@@ -22,11 +20,9 @@ public class ShoppingCartServiceImpl implements ShoppingCartService{
 
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private CatalogCache catalogCache;
     @Autowired
-    private DishMapper dishMapper;
-    @Autowired
-    private SetmealMapper setmealMapper;
+    private ShoppingCartStore shoppingCartStore;
 
 
 
@@ -40,35 +36,28 @@ public class ShoppingCartServiceImpl implements ShoppingCartService{
         //只能查询自己的购物车数据
         shoppingCart.setUserId(BaseContext.getCurrentId());
 
-        //判断当前商品是否在购物车中
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
-        if (shoppingCartList != null && shoppingCartList.size() == 1) {
-            //如果已经存在，就跟新数量，数量+1
-            shoppingCart = shoppingCartList.get(0);
-            shoppingCart.setNumber(shoppingCart.getNumber()+1);
-            shoppingCartMapper.updateNumberById(shoppingCart);
-        }else{
-            //如果不存在，则插入一条购物车数据
-            
+        //数量+1，需要新增购物车记录时才从缓存中获取菜品或套餐信息
+        shoppingCartStore.add(shoppingCart, 1, () -> {
+            //快照会被购物车修改，单独创建，不复用shoppingCart
+            ShoppingCart snapshot = new ShoppingCart();
+            BeanUtils.copyProperties(shoppingCartDTO, snapshot);
             //判断当前添加到购物车的是才品还是套餐
             Long dishId = shoppingCartDTO.getDishId();
             if(dishId != null){
                 //添加到购物车的是菜品
-                Dish dish = dishMapper.getById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
+                Dish dish = catalogCache.getDish(dishId);
+                snapshot.setName(dish.getName());
+                snapshot.setImage(dish.getImage());
+                snapshot.setAmount(dish.getPrice());
             }else{
                 //添加到购物车的是套餐
-                Setmeal setmeal = setmealMapper.getById(shoppingCartDTO.getSetmealId());
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
+                Setmeal setmeal = catalogCache.getSetmeal(shoppingCartDTO.getSetmealId());
+                snapshot.setName(setmeal.getName());
+                snapshot.setImage(setmeal.getImage());
+                snapshot.setAmount(setmeal.getPrice());
             }
-            shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            shoppingCartMapper.insert(shoppingCart);
-        }
+            return snapshot;
+        });
     }
 
     /**
@@ -76,7 +65,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService{
      * @return
      */
     public List<ShoppingCart> showShoppingCart(){
-        return shoppingCartMapper.list(ShoppingCart.builder().userId(BaseContext.getCurrentId()).build());
+        return shoppingCartStore.list(BaseContext.getCurrentId());
 
     }
 
@@ -85,6 +74,6 @@ public class ShoppingCartServiceImpl implements ShoppingCartService{
      * 
      */
     public void cleanShoppingCart(){
-        shoppingCartMapper.deleteByUserId(BaseContext.getCurrentId());
+        shoppingCartStore.clear(BaseContext.getCurrentId());
     }
 }
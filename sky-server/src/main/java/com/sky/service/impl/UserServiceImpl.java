@@ -17,6 +17,7 @@ import com.sky.mapper.UserMapper;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
 import com.sky.properties.WeChatProperties;
+import com.sky.service.DailyBusinessStatsService;
 import com.sky.service.UserService;
 import com.sky.utils.HttpClientUtil;
 
@@ -32,6 +33,10 @@ public class UserServiceImpl implements UserService {
     private WeChatProperties weChatProperties;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private DailyBusinessStatsService dailyBusinessStatsService;
+    @Autowired
+    private HttpClientUtil httpClientUtil;
 
     /**
      * 微信登录
@@ -54,6 +59,7 @@ public class UserServiceImpl implements UserService {
             {
                 user = User.builder().openid(openid).createTime(LocalDateTime.now()).build();
                 userMapper.insert(user);
+                dailyBusinessStatsService.userRegistered(user);
             }
         //返回这个用户对象
         return user;
@@ -72,7 +78,7 @@ public class UserServiceImpl implements UserService {
         map.put("secret",weChatProperties.getSecret());
         map.put("js_code",code);
         map.put("grant_type","authorization_code");
-        String json = HttpClientUtil.doGet(WX_LOGIN,map);
+        String json = httpClientUtil.doGet(WX_LOGIN,map);
 
         JSONObject jsonObject = JSON.parseObject(json);
         String openid = jsonObject.getString("openid");
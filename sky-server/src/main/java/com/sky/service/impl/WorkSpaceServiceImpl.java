@@ -2,9 +2,12 @@ package com.sky.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,9 +16,11 @@ import org.springframework.stereotype.Service;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
 import com.sky.constant.StatusConstant;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealMapper;
+import com.sky.service.DailyBusinessStatsService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
@@ -36,6 +41,8 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private DailyBusinessStatsService dailyBusinessStatsService;
 
 
 
@@ -56,6 +63,11 @@ public class WorkspaceServiceImpl implements WorkspaceService {
          * 
          */
         try {
+            //已经结束的整天区间，直接读取每日汇总数据，无需扫描订单表和用户表
+            if (isClosedDays(begin, end)) {
+                return getBusinessDataFromStats(begin.toLocalDate(), end.toLocalDate());
+            }
+
             Map<String,Object> map = new HashMap<>();
             map.put("begin",begin);
             map.put("end",end);
@@ -112,6 +124,55 @@ public class WorkspaceServiceImpl implements WorkspaceService {
         }
     }
 
+    /**
+     * 判断时间段是否由今天之前的若干个完整自然日组成
+     * @param begin
+     * @param end
+     * @return
+     */
+    private boolean isClosedDays(LocalDateTime begin, LocalDateTime end) {
+        return begin.toLocalTime().equals(LocalTime.MIN)
+                && end.toLocalTime().equals(LocalTime.MAX)
+                && !begin.toLocalDate().isAfter(end.toLocalDate())
+                && end.toLocalDate().isBefore(LocalDate.now());
+    }
+
+    /**
+     * 根据每日汇总数据统计营业数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    private BusinessDataVO getBusinessDataFromStats(LocalDate begin, LocalDate end) {
+        List<DailyBusinessStats> statsList = dailyBusinessStatsService.listByDateRange(begin, end);
+
+        BigDecimal turnover = BigDecimal.ZERO;
+        int totalOrderCount = 0;
+        int validOrderCount = 0;
+        int newUsers = 0;
+        for (DailyBusinessStats stats : statsList) {
+            turnover = turnover.add(stats.getTurnover());
+            totalOrderCount += stats.getOrderCount();
+            validOrderCount += stats.getValidOrderCount();
+            newUsers += stats.getNewUsers();
+        }
+
+        Double unitPrice = 0.0;
+        Double orderCompletionRate = 0.0;
+        if (totalOrderCount != 0 && validOrderCount != 0) {
+            orderCompletionRate = (double) validOrderCount / totalOrderCount;
+            unitPrice = turnover.doubleValue() / validOrderCount;
+        }
+
+        return BusinessDataVO.builder()
+            .turnover(turnover.doubleValue())
+            .validOrderCount(validOrderCount)
+            .orderCompletionRate(orderCompletionRate)
+            .unitPrice(unitPrice)
+            .newUsers(newUsers)
+            .build();
+    }
+
     /**
      * 查询订单管理数据
      * @return
@@ -0,0 +1,338 @@
+package com.sky.stock;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.DishStock;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.DishStockMapper;
+import com.sky.mapper.OrderDetailMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 菜品每日库存的内存预占账本
+ * 每个节点从dish_stock表中按批分配库存到本地，下单时在本地的原子计数器上通过CAS预占，不加锁也不访问数据库；
+ * 本地库存不足时才从数据库再分配一批，数据库保证分配总量不超过总库存，多个节点同时售卖也不会超卖
+ * 支付成功时确认售出，订单取消时把库存归还到本节点，已支付份数定期写回数据库；没有库存记录的菜品不限量
+ * 预占需要在下单事务开始之前进行，从数据库分配库存时不占用下单事务的连接和行锁；
+ * 确认和归还只在调用方事务提交后修改本地计数器，事务回滚不会多出库存
+ */
+@Component
+@Slf4j
+public class StockLedger {
+
+    //key为{菜品id}_{日期}
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    @Autowired
+    private DishStockMapper dishStockMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    //每次从数据库分配的库存数量
+    @Value("${sky.stock.lease-size:20}")
+    private int leaseSize;
+
+    //不限量的菜品隔多久重新检查是否设置了库存
+    @Value("${sky.stock.unlimited-recheck:PT1M}")
+    private Duration unlimitedRecheck;
+
+    //分配库存使用独立事务，不随下单事务回滚，否则本地计数器会多出数据库中没有记录的库存
+    private TransactionTemplate requiresNew;
+
+    @PostConstruct
+    public void init() {
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 预占当天的菜品库存，任一菜品库存不足时归还已预占的部分并抛出异常
+     * 需要在事务外调用，之后下单失败时调用方通过unreserve归还
+     * @param quantities 菜品id -> 份数
+     */
+    public void reserve(Map<Long, Integer> quantities) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            log.warn("在事务中预占菜品库存，从数据库分配库存时会额外占用一个连接");
+        }
+        LocalDate today = LocalDate.now();
+        Map<Long, Integer> reserved = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            if (!tryReserve(counter(entry.getKey(), today), entry.getValue())) {
+                giveBack(reserved, today);
+                throw new OrderBusinessException(MessageConstant.DISH_STOCK_NOT_ENOUGH);
+            }
+            reserved.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 下单失败，归还reserve预占的库存
+     * @param quantities 菜品id -> 份数
+     */
+    public void unreserve(Map<Long, Integer> quantities) {
+        giveBack(quantities, LocalDate.now());
+    }
+
+    /**
+     * 订单支付成功，确认售出
+     * @param orders
+     */
+    public void confirm(Orders orders) {
+        LocalDate date = orders.getOrderTime().toLocalDate();
+        List<Runnable> changes = new ArrayList<>();
+        dishQuantities(orderDetailMapper.getByOrderId(orders.getId())).forEach((dishId, number) -> {
+            Counter counter = counter(dishId, date);
+            if (!counter.unlimited) {
+                changes.add(() -> counter.soldDelta.addAndGet(number));
+            }
+        });
+        afterCommit(changes);
+    }
+
+    /**
+     * 订单取消，归还预占的库存，已支付的订单同时扣减已支付份数
+     * 调用方需保证同一订单只归还一次（按原状态条件更新订单，修改成功后才归还）
+     * @param orders 取消前的订单
+     */
+    public void release(Orders orders) {
+        release(Collections.singletonList(orders));
+    }
+
+    /**
+     * 批量归还取消订单的库存
+     * @param ordersList 取消前的订单
+     */
+    public void release(List<Orders> ordersList) {
+        if (ordersList.isEmpty()) {
+            return;
+        }
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        Map<Long, List<OrderDetail>> detailMap = orderDetailMapper.getByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+
+        LocalDate today = LocalDate.now();
+        List<Runnable> changes = new ArrayList<>();
+        for (Orders orders : ordersList) {
+            LocalDate date = orders.getOrderTime().toLocalDate();
+            boolean paid = isPaid(orders);
+            dishQuantities(detailMap.getOrDefault(orders.getId(), Collections.emptyList())).forEach((dishId, number) -> {
+                Counter counter = counter(dishId, date);
+                if (counter.unlimited) {
+                    return;
+                }
+                //只有当天的库存还能继续售卖
+                if (date.equals(today)) {
+                    changes.add(() -> counter.available.addAndGet(number));
+                }
+                if (paid) {
+                    changes.add(() -> counter.soldDelta.addAndGet(-number));
+                }
+            });
+        }
+        afterCommit(changes);
+    }
+
+    /**
+     * 定期将已支付份数写回数据库，并移除往日的计数器
+     */
+    @Scheduled(fixedDelayString = "${sky.stock.checkpoint-interval:5000}")
+    public void checkpoint() {
+        LocalDate today = LocalDate.now();
+        counters.values().forEach(this::flushSold);
+        counters.values().removeIf(counter -> counter.date.isBefore(today) && counter.soldDelta.get() == 0);
+    }
+
+    /**
+     * 停止服务前写回已支付份数，并把本节点未使用的库存还给数据库
+     */
+    @PreDestroy
+    public void destroy() {
+        checkpoint();
+        LocalDate today = LocalDate.now();
+        counters.values().forEach(counter -> {
+            int available = counter.available.getAndSet(0);
+            if (!counter.unlimited && available > 0 && counter.date.equals(today)) {
+                try {
+                    dishStockMapper.deallocate(counter.dishId, counter.date, available);
+                } catch (Exception e) {
+                    log.error("归还菜品库存失败，菜品id：{}，数量：{}，{}", counter.dishId, available, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private boolean tryReserve(Counter counter, int number) {
+        if (counter.unlimited) {
+            return true;
+        }
+        while (true) {
+            if (take(counter, number)) {
+                return true;
+            }
+            //本地库存不足时从数据库分配，同一菜品同时只有一个线程去分配，其他线程等待分配完成后重试，等待期间不持有锁
+            CompletableFuture<Integer> created = new CompletableFuture<>();
+            CompletableFuture<Integer> pending = counter.topUp.compareAndExchange(null, created);
+            if (pending != null) {
+                pending.handle((granted, e) -> granted).join();
+                continue;
+            }
+
+            int granted = 0;
+            try {
+                //剩余库存不足一批时，只分配本次需要的数量
+                granted = allocate(counter, Math.max(number, leaseSize));
+                if (granted == 0 && leaseSize > number) {
+                    granted = allocate(counter, number);
+                }
+                counter.available.addAndGet(granted);
+            } finally {
+                counter.topUp.set(null);
+                created.complete(granted);
+            }
+            if (granted == 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 通过CAS从本地库存中扣减
+     */
+    private boolean take(Counter counter, int number) {
+        while (true) {
+            int available = counter.available.get();
+            if (available < number) {
+                return false;
+            }
+            if (counter.available.compareAndSet(available, available - number)) {
+                return true;
+            }
+        }
+    }
+
+    private int allocate(Counter counter, int number) {
+        Integer rows = requiresNew.execute(status -> dishStockMapper.allocate(counter.dishId, counter.date, number));
+        return rows != null && rows > 0 ? number : 0;
+    }
+
+    private void giveBack(Map<Long, Integer> reserved, LocalDate date) {
+        reserved.forEach((dishId, number) -> {
+            Counter counter = counter(dishId, date);
+            if (!counter.unlimited) {
+                counter.available.addAndGet(number);
+            }
+        });
+    }
+
+    private void flushSold(Counter counter) {
+        int delta = counter.soldDelta.getAndSet(0);
+        if (delta == 0) {
+            return;
+        }
+        try {
+            dishStockMapper.addSold(counter.dishId, counter.date, delta);
+        } catch (Exception e) {
+            log.error("写回菜品已支付份数失败，菜品id：{}，{}", counter.dishId, e.getMessage());
+            counter.soldDelta.addAndGet(delta);
+        }
+    }
+
+    private Counter counter(Long dishId, LocalDate date) {
+        String key = dishId + "_" + date;
+        Counter counter = counters.get(key);
+        if (counter != null && !counter.needsRecheck(unlimitedRecheck)) {
+            return counter;
+        }
+        //在compute之外查询数据库，避免查询期间阻塞同一分段的其他key
+        DishStock dishStock = dishStockMapper.getByDishIdAndDate(dishId, date);
+        Counter loaded = new Counter(dishId, date, dishStock == null);
+        return counters.compute(key, (k, current) ->
+                current != null && !current.needsRecheck(unlimitedRecheck) ? current : loaded);
+    }
+
+    /**
+     * 存在事务时在事务提交后修改本地计数器，事务回滚时不修改
+     */
+    private void afterCommit(List<Runnable> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changes.forEach(Runnable::run);
+                }
+            });
+        } else {
+            changes.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * 已支付、尚未完成的订单
+     */
+    private boolean isPaid(Orders orders) {
+        Integer status = orders.getStatus();
+        return status != null && status >= Orders.TO_BE_CONFIRMED && status < Orders.COMPLETED;
+    }
+
+    private Map<Long, Integer> dishQuantities(List<OrderDetail> orderDetailList) {
+        return orderDetailList.stream()
+                .filter(orderDetail -> orderDetail.getDishId() != null)
+                .collect(Collectors.groupingBy(OrderDetail::getDishId, Collectors.summingInt(OrderDetail::getNumber)));
+    }
+
+    private static class Counter {
+        private final Long dishId;
+        private final LocalDate date;
+        //没有库存记录，不限量
+        private final boolean unlimited;
+        private final long createTime = System.currentTimeMillis();
+        //本节点已分配、尚未预占的库存
+        private final AtomicInteger available = new AtomicInteger();
+        //尚未写回数据库的已支付份数变化
+        private final AtomicInteger soldDelta = new AtomicInteger();
+        //正在进行的数据库分配
+        private final AtomicReference<CompletableFuture<Integer>> topUp = new AtomicReference<>();
+
+        Counter(Long dishId, LocalDate date, boolean unlimited) {
+            this.dishId = dishId;
+            this.date = date;
+            this.unlimited = unlimited;
+        }
+
+        boolean needsRecheck(Duration recheck) {
+            return unlimited && System.currentTimeMillis() - createTime > recheck.toMillis();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.sky.task;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.sky.service.DailyBusinessStatsService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 每日营业数据汇总对账任务
+ */
+@Component
+@Slf4j
+public class BusinessStatsTask {
+
+    @Autowired
+    private DailyBusinessStatsService dailyBusinessStatsService;
+    @Autowired
+    private TaskLease taskLease;
+
+    @Value("${sky.stats.reconcile-days:7}")
+    private int reconcileDays;
+
+    /**
+     * 每天凌晨根据原始数据重建最近几天的汇总行，修正增量维护可能产生的偏差，
+     * 同时提前生成当天的汇总行
+     */
+    @Scheduled(cron = "0 5 0 * * ?")
+    public void reconcile() {
+        taskLease.runExclusively("reconcileBusinessStats", Duration.ofMinutes(30), Duration.ofMinutes(1), this::rebuildStats);
+    }
+
+    private void rebuildStats() {
+        log.info("每日营业数据对账：{}", new Date());
+        LocalDate today = LocalDate.now();
+        for (int i = reconcileDays; i >= 0; i--) {
+            dailyBusinessStatsService.rebuild(today.minusDays(i));
+        }
+    }
+}
@@ -1,15 +1,23 @@
 package com.sky.task;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 import com.sky.controller.user.AddressBookController;
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
+import com.sky.service.DailyBusinessStatsService;
+import com.sky.stock.StockLedger;
 import com.sky.service.impl.AddressBookServiceImpl;
 import lombok.extern.slf4j.Slf4j;
 
@@ -26,6 +34,18 @@ public class OrderTask {
     private final AddressBookController addressBookController;
     @Autowired
     private OrderMapper orderMapper;
+    @Autowired
+    private DailyBusinessStatsService dailyBusinessStatsService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private TaskLease taskLease;
+    @Autowired
+    private StockLedger stockLedger;
+
+    //每批修改的订单数量
+    @Value("${sky.order.task-batch-size:500}")
+    private int batchSize;
 
     OrderTask(AddressBookController addressBookController, AddressBookServiceImpl addressBookServiceImpl) {
         this.addressBookController = addressBookController;
@@ -34,21 +54,28 @@ public class OrderTask {
 
     /**
      * 处理支付超时订单
-     * 
+     * 超时取消由PaymentTimeoutQueue按截止时间处理，这里每小时兜底扫描一次遗漏的订单
      */
-    @Scheduled(cron = "0 * * * * ?")
+    @Scheduled(cron = "0 0 * * * ?")
     public void executeTask(){
+        taskLease.runExclusively("executeTask", Duration.ofMinutes(30), Duration.ofMinutes(1), this::cancelTimeoutOrders);
+    }
+
+    private void cancelTimeoutOrders(){
         log.info("定时任务开启：{}",new Date());
         LocalDateTime time = LocalDateTime.now().plusMinutes(-15);
-        //select * from orders where status =1 and order_time< 当前时间-15分钟
-        List<Orders> ordersList = orderMapper.getByStatusAndOrdertimeLT(Orders.PENDING_PAYMENT,time);
-        if(ordersList != null && ordersList.size() > 0 ) {
-            ordersList.forEach(order -> {
-                order.setStatus(Orders.CANCELLED);
-                order.setCancelReason("支付超时,自动取消");
-                order.setCancelTime(LocalDateTime.now());
-                orderMapper.update(order);
-            });
+        //update orders set status = 6 where status = 1 and order_time < 当前时间-15分钟，分批执行
+        Orders target = Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason("支付超时,自动取消")
+                .cancelTime(LocalDateTime.now())
+                .build();
+        List<Long> ids = transitionInBatches(Orders.PENDING_PAYMENT, time, target, ordersList -> {
+            dailyBusinessStatsService.ordersCancelled(ordersList);
+            stockLedger.release(ordersList);
+        });
+        if (!ids.isEmpty()) {
+            log.info("支付超时自动取消订单：{}", ids);
         }
     }
     /**
@@ -56,16 +83,54 @@ public class OrderTask {
      */
     @Scheduled(cron ="0  0  1 * * ?")
     public void  processDeliveryOrder(){
+        taskLease.runExclusively("processDeliveryOrder", Duration.ofMinutes(30), Duration.ofMinutes(1), this::completeDeliveryOrders);
+    }
+
+    private void completeDeliveryOrders(){
         log.info("处理派送中订单：{}",new Date());
-        //select * from orders where status = 4 and  order_time =< 当前时间-1小时
+        //update orders set status = 5 where status = 4 and order_time < 当前时间-1小时，分批执行
         LocalDateTime time = LocalDateTime.now().plusHours(-1);
-        List<Orders> ordersList = orderMapper.getByStatusAndOrdertimeLT(Orders.DELIVERY_IN_PROGRESS,time);
-        if(ordersList != null && ordersList.size() > 0 ) {
-            ordersList.forEach(order -> {
-                order.setStatus(Orders.COMPLETED);
-                orderMapper.update(order);
+        Orders target = Orders.builder().status(Orders.COMPLETED).build();
+        List<Long> ids = transitionInBatches(Orders.DELIVERY_IN_PROGRESS, time, target,
+                ordersList -> dailyBusinessStatsService.ordersCompleted(ordersList));
+        if (!ids.isEmpty()) {
+            log.info("派送中订单自动完成：{}", ids);
+        }
+    }
+
+    /**
+     * 分批批量修改订单状态
+     * 每批在一个短事务中锁定最多batchSize条订单并用一条update修改，避免逐条更新和长时间持有行锁
+     * @param fromStatus 原状态
+     * @param orderTime 下单时间上限
+     * @param target 需要修改的字段
+     * @param afterBatch 每批修改完成后的处理，在该批的事务中执行
+     * @return 所有被修改的订单id
+     */
+    private List<Long> transitionInBatches(Integer fromStatus, LocalDateTime orderTime, Orders target,
+                                           Consumer<List<Orders>> afterBatch) {
+        List<Long> affectedIds = new ArrayList<>();
+        while (true) {
+            List<Orders> ordersList = transactionTemplate.execute(status -> {
+                List<Orders> batch = orderMapper.getByStatusAndOrdertimeLTForUpdate(fromStatus, orderTime, batchSize);
+                if (!batch.isEmpty()) {
+                    List<Long> ids = batch.stream().map(Orders::getId).collect(Collectors.toList());
+                    orderMapper.updateStatusByIds(ids, fromStatus, target);
+                    //汇总数据在该批事务提交后累加，事务回滚时不计入
+                    afterBatch.accept(batch);
+                }
+                return batch;
             });
+            if (ordersList == null || ordersList.isEmpty()) {
+                break;
+            }
+
+            ordersList.forEach(orders -> affectedIds.add(orders.getId()));
+            if (ordersList.size() < batchSize) {
+                break;
+            }
         }
+        return affectedIds;
     }
 
 }
@@ -0,0 +1,138 @@
+package com.sky.task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.DailyBusinessStatsService;
+import com.sky.stock.StockLedger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 基于Redis有序集合的支付超时延迟队列
+ * 下单时以支付截止时间为分数加入队列，每秒取出到期的订单，仍未支付的自动取消
+ */
+@Component
+@Slf4j
+public class PaymentTimeoutQueue {
+
+    public static final String QUEUE_KEY = "sky:order:pay-timeout";
+
+    //每次最多取出的到期订单数
+    private static final int POLL_SIZE = 100;
+
+    //取消失败后重新放回队列的延迟时间
+    private static final long RETRY_DELAY_MILLIS = 10 * 1000;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private DailyBusinessStatsService dailyBusinessStatsService;
+    @Autowired
+    private StockLedger stockLedger;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    //支付超时时间
+    @Value("${sky.order.pay-timeout:PT15M}")
+    private Duration payTimeout;
+
+    /**
+     * 将新订单加入延迟队列
+     * @param orderId
+     * @param orderTime
+     */
+    public void schedule(Long orderId, LocalDateTime orderTime) {
+        redisTemplate.opsForZSet().add(QUEUE_KEY, orderId.toString(), deadline(orderTime));
+    }
+
+    /**
+     * 订单已支付或已取消，从延迟队列中移除
+     * @param orderId
+     */
+    public void remove(Long orderId) {
+        redisTemplate.opsForZSet().remove(QUEUE_KEY, orderId.toString());
+    }
+
+    /**
+     * 应用启动后根据数据库中待付款的订单重建延迟队列，重复加入不会产生影响
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rehydrate() {
+        try {
+            List<Orders> ordersList = orderMapper.getByStatus(Orders.PENDING_PAYMENT);
+            ordersList.forEach(orders -> schedule(orders.getId(), orders.getOrderTime()));
+            log.info("支付超时延迟队列恢复完成，待付款订单数：{}", ordersList.size());
+        } catch (Exception e) {
+            log.error("支付超时延迟队列恢复失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 取出到期的订单并取消
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void poll() {
+        long now = System.currentTimeMillis();
+        Set<String> dueIds = redisTemplate.opsForZSet().rangeByScore(QUEUE_KEY, 0, now, 0, POLL_SIZE);
+        if (dueIds == null || dueIds.isEmpty()) {
+            return;
+        }
+
+        for (String id : dueIds) {
+            //多个节点同时取到同一订单时，只有移除成功的节点负责处理
+            Long removed = redisTemplate.opsForZSet().remove(QUEUE_KEY, id);
+            if (removed == null || removed == 0) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> cancelIfUnpaid(Long.valueOf(id)));
+            } catch (Exception e) {
+                //取消失败时重新放回队列，稍后重试，避免订单一直停留在待付款状态
+                log.error("支付超时订单：{} 取消失败，稍后重试：{}", id, e.getMessage());
+                redisTemplate.opsForZSet().add(QUEUE_KEY, id, now + RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void cancelIfUnpaid(Long orderId) {
+        Orders ordersDB = orderMapper.getById(orderId);
+        if (ordersDB == null || !Orders.PENDING_PAYMENT.equals(ordersDB.getStatus())) {
+            return;
+        }
+
+        Orders target = Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason("支付超时,自动取消")
+                .cancelTime(LocalDateTime.now())
+                .build();
+        //只有仍处于待付款状态的订单才会被修改，避免和支付回调冲突
+        int rows = orderMapper.updateStatusByIds(Collections.singletonList(orderId), Orders.PENDING_PAYMENT, target);
+        if (rows > 0) {
+            log.info("支付超时自动取消订单：{}", orderId);
+            dailyBusinessStatsService.orderCancelled(ordersDB);
+            stockLedger.release(ordersDB);
+        }
+    }
+
+    private double deadline(LocalDateTime orderTime) {
+        return orderTime.plus(payTimeout).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,94 @@
+package com.sky.task;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 定时任务租约
+ * 基于Redis SET NX PX实现，多个节点部署时保证同一个任务每次只在一个节点上执行，
+ * 持有租约的节点宕机后租约自动过期，由其他节点接管
+ * 租约不提供防护令牌，执行超时后新旧持有者可能短暂重叠，任务中的写操作需要自身可重入（如按原状态条件更新）
+ */
+@Component
+@Slf4j
+public class TaskLease {
+
+    private static final String KEY_PREFIX = "sky:lease:";
+
+    //租约值与当前持有者一致时才删除
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    //租约值与当前持有者一致时才修改剩余时间
+    private static final RedisScript<Long> SHORTEN_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    //当前节点标识
+    private final String node = UUID.randomUUID().toString();
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 获取租约成功后执行任务，获取失败说明其他节点正在执行或本轮已执行，直接跳过
+     * @param name 任务名称
+     * @param lockAtMostFor 租约最长持有时间，节点宕机后经过该时间由其他节点接管
+     * @param lockAtLeastFor 租约最短持有时间，避免节点间时钟偏差导致同一轮任务被执行多次
+     * @param task
+     * @return 本节点是否执行了任务
+     */
+    public boolean runExclusively(String name, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable task) {
+        String key = KEY_PREFIX + name;
+        //每次获取租约使用不同的值，释放时只删除本次获取的租约
+        String value = node + ":" + UUID.randomUUID();
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(key, value, lockAtMostFor);
+        if (!Boolean.TRUE.equals(acquired)) {
+            record(name, "skipped");
+            return false;
+        }
+        record(name, "acquired");
+        log.debug("获取任务租约：{}，持有者：{}", name, value);
+
+        long start = System.currentTimeMillis();
+        try {
+            task.run();
+        } finally {
+            release(name, key, value, lockAtLeastFor, System.currentTimeMillis() - start);
+        }
+        return true;
+    }
+
+    private void release(String name, String key, String value, Duration lockAtLeastFor, long elapsed) {
+        long remaining = lockAtLeastFor.toMillis() - elapsed;
+        Long result;
+        if (remaining > 0) {
+            result = redisTemplate.execute(SHORTEN_SCRIPT, Collections.singletonList(key), value, String.valueOf(remaining));
+        } else {
+            result = redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key), value);
+        }
+        if (result == null || result == 0) {
+            //执行时间超过最长持有时间，租约已被其他节点获取
+            log.warn("任务：{} 的租约在执行期间已过期", name);
+            record(name, "lost");
+        }
+    }
+
+    private void record(String name, String result) {
+        meterRegistry.counter("sky.task.lease", "name", name, "result", result).increment();
+    }
+}
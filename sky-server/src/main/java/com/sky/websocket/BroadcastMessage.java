@@ -0,0 +1,33 @@
+package com.sky.websocket;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 集群内广播的WebSocket消息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastMessage implements Serializable {
+
+    //消息唯一标识，用于去重
+    private String id;
+
+    //发送消息的节点
+    private String node;
+
+    //关联的订单id
+    private Long orderId;
+
+    //同一订单内递增的序号，用于按顺序推送
+    private Long seq;
+
+    //发送给客户端的消息内容
+    private String content;
+}
@@ -0,0 +1,104 @@
+package com.sky.websocket;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 单个客户端的发送通道
+ * 消息先进入有界队列，再通过异步remote逐条发送，同一时刻每个会话最多只有一条消息在发送中
+ */
+@Slf4j
+public class SessionChannel implements SendHandler {
+
+    private final String sid;
+
+    private final Session session;
+
+    private final BlockingQueue<String> queue;
+
+    private final AtomicBoolean sending = new AtomicBoolean(false);
+
+    //当前消息开始发送的时间，0表示没有消息在发送中
+    private volatile long sendStartedAt;
+
+    public SessionChannel(String sid, Session session, int capacity) {
+        this.sid = sid;
+        this.session = session;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+    }
+
+    public String getSid() {
+        return sid;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * 消息入队并触发发送，队列中已有相同且未发送的消息时直接合并
+     * @param message
+     * @return 队列已满返回false
+     */
+    public boolean offer(String message) {
+        if (!queue.contains(message) && !queue.offer(message)) {
+            return false;
+        }
+        trySend();
+        return true;
+    }
+
+    /**
+     * 判断当前消息是否已发送超时，客户端长时间不读取数据时为true
+     * @param timeoutMillis
+     * @return
+     */
+    public boolean isStalled(long timeoutMillis) {
+        long startedAt = sendStartedAt;
+        return startedAt > 0 && System.currentTimeMillis() - startedAt > timeoutMillis;
+    }
+
+    /**
+     * 异步发送完成回调，继续发送队列中的下一条消息
+     * @param result
+     */
+    @Override
+    public void onResult(SendResult result) {
+        if (!result.isOK()) {
+            log.error("向客户端：{} 发送消息失败：{}", sid, result.getException().getMessage());
+        }
+        sendStartedAt = 0;
+        sending.set(false);
+        trySend();
+    }
+
+    private void trySend() {
+        while (!queue.isEmpty() && sending.compareAndSet(false, true)) {
+            String message = queue.poll();
+            if (message == null) {
+                sending.set(false);
+                continue;
+            }
+            if (!session.isOpen()) {
+                queue.clear();
+                sending.set(false);
+                return;
+            }
+            sendStartedAt = System.currentTimeMillis();
+            try {
+                session.getAsyncRemote().sendText(message, this);
+            } catch (Exception e) {
+                log.error("向客户端：{} 发送消息失败：{}", sid, e.getMessage());
+                sendStartedAt = 0;
+                sending.set(false);
+            }
+            return;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.sky.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.alibaba.fastjson.JSON;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 集群WebSocket广播
+ * 消息发布到Redis频道，每个节点订阅后推送给本节点上连接的客户端
+ * 按消息id去重，同一事件重复投递时只推送一次；同一订单的消息按序号推送，先到的后序消息最多等待reorder-wait，
+ * 等待超时后跳过缺失的序号，之后才到的消息照常推送
+ */
+@Component
+@Slf4j
+public class WebSocketBroadcaster implements MessageListener {
+
+    public static final String CHANNEL = "sky:ws:broadcast";
+
+    private static final String SEQ_KEY_PREFIX = "sky:ws:seq:";
+
+    //去重记录、订单推送进度的最大条数
+    private static final int MAX_TRACKED = 10000;
+
+    //当前节点标识
+    private final String node = UUID.randomUUID().toString();
+
+    //最近推送过的消息id
+    private final Map<String, Boolean> seen = Collections.synchronizedMap(lruMap());
+
+    //每个订单的推送进度，key为订单id
+    private final Map<Long, OrderStream> streams = Collections.synchronizedMap(lruMap());
+
+    //等待超时后推送暂存的消息
+    private final ScheduledExecutorService reorderTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ws-reorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //同一订单的消息乱序到达时，等待缺失消息的最长时间
+    @Value("${sky.websocket.reorder-wait:PT0.5S}")
+    private Duration reorderWait;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        reorderTimer.shutdownNow();
+    }
+
+    /**
+     * 向集群内所有节点的客户端广播订单消息
+     * @param orderId
+     * @param content
+     */
+    public void broadcast(Long orderId, String content) {
+        broadcast(UUID.randomUUID().toString(), orderId, content);
+    }
+
+    /**
+     * 使用指定的消息id广播订单消息，相同id的消息每个节点只推送一次
+     * @param id
+     * @param orderId
+     * @param content
+     */
+    public void broadcast(String id, Long orderId, String content) {
+        BroadcastMessage message = BroadcastMessage.builder()
+                .id(id)
+                .node(node)
+                .orderId(orderId)
+                .content(content)
+                .build();
+        try {
+            if (orderId != null) {
+                String seqKey = SEQ_KEY_PREFIX + orderId;
+                message.setSeq(redisTemplate.opsForValue().increment(seqKey));
+                redisTemplate.expire(seqKey, Duration.ofDays(1));
+            }
+            redisTemplate.convertAndSend(CHANNEL, JSON.toJSONString(message));
+        } catch (Exception e) {
+            //Redis不可用时至少保证本节点的客户端收到消息
+            log.error("发布WebSocket广播失败，仅推送本节点：{}", e.getMessage());
+            deliver(message);
+        }
+    }
+
+    /**
+     * 收到Redis频道消息，推送给本节点的客户端
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        deliver(JSON.parseObject(body, BroadcastMessage.class));
+    }
+
+    private void deliver(BroadcastMessage message) {
+        if (message.getOrderId() == null || message.getSeq() == null) {
+            push(message);
+            return;
+        }
+        OrderStream stream = streams.computeIfAbsent(message.getOrderId(), orderId -> new OrderStream());
+        long seq = message.getSeq();
+        synchronized (stream) {
+            if (stream.lastSeq == 0 || seq == stream.lastSeq + 1) {
+                //本节点第一次收到该订单的消息，或者正好是下一条
+                stream.lastSeq = seq;
+                push(message);
+                drain(stream);
+            } else if (seq <= stream.lastSeq) {
+                //等待超时后才到达的消息，照常推送
+                push(message);
+            } else {
+                //前面的消息还没到，暂存等待
+                stream.pending.put(seq, message);
+                if (stream.pending.size() == 1) {
+                    scheduleFlush(stream);
+                }
+            }
+        }
+    }
+
+    /**
+     * 推送暂存的、序号连续的消息
+     */
+    private void drain(OrderStream stream) {
+        BroadcastMessage next;
+        while ((next = stream.pending.remove(stream.lastSeq + 1)) != null) {
+            stream.lastSeq++;
+            push(next);
+        }
+    }
+
+    private void scheduleFlush(OrderStream stream) {
+        long generation = ++stream.generation;
+        reorderTimer.schedule(() -> flush(stream, generation), reorderWait.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 等待超时，跳过缺失的序号，按顺序推送暂存的消息
+     */
+    private void flush(OrderStream stream, long generation) {
+        synchronized (stream) {
+            if (stream.generation != generation || stream.pending.isEmpty()) {
+                return;
+            }
+            stream.lastSeq = stream.pending.firstKey();
+            push(stream.pending.remove(stream.lastSeq));
+            drain(stream);
+            if (!stream.pending.isEmpty()) {
+                scheduleFlush(stream);
+            }
+        }
+    }
+
+    /**
+     * 推送给本节点的客户端，重复投递的消息（相同id）只推送一次
+     */
+    private void push(BroadcastMessage message) {
+        if (seen.put(message.getId(), Boolean.TRUE) != null) {
+            return;
+        }
+        webSocketServer.sendToAllClient(message.getContent());
+    }
+
+    private static <K, V> Map<K, V> lruMap() {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > MAX_TRACKED;
+            }
+        };
+    }
+
+    /**
+     * 一个订单的推送进度
+     */
+    private static class OrderStream {
+        //已推送的最大序号，0表示本节点还没收到过该订单的消息
+        private long lastSeq;
+        //序号不连续、暂存等待的消息
+        private final TreeMap<Long, BroadcastMessage> pending = new TreeMap<>();
+        //每次开始等待时递增，过期的等待任务不再推送
+        private long generation;
+    }
+}
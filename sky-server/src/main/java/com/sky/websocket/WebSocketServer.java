@@ -1,15 +1,16 @@
 package com.sky.websocket;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.stereotype.Component;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
-
+import jakarta.websocket.CloseReason;
 import jakarta.websocket.OnClose;
 import jakarta.websocket.OnError;
 import jakarta.websocket.OnMessage;
@@ -26,16 +27,35 @@ import lombok.extern.slf4j.Slf4j;
 @ServerEndpoint("/ws/{sid}")
 @Slf4j
 public class WebSocketServer {
-    // 存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap<>();
-    
+    // 每个会话待发送消息的队列长度
+    private static final int SESSION_QUEUE_CAPACITY = 256;
+    // 单条消息发送超时时间，超过后视为慢客户端并断开
+    private static final long SEND_TIMEOUT_MILLIS = 10 * 1000;
+    // 等待派发的群发消息上限
+    private static final int DISPATCH_QUEUE_CAPACITY = 10000;
+
+    // 存放会话对象，容器为每个连接创建新的端点实例，因此会话表和派发线程是静态共享的
+    private static final Map<String, SessionChannel> sessionMap = new ConcurrentHashMap<>();
+
+    // 群发消息派发线程，调用方只负责提交，不会被客户端的网络状况阻塞
+    private static final ExecutorService dispatcher = new ThreadPoolExecutor(1, 1,
+            0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(DISPATCH_QUEUE_CAPACITY),
+            r -> {
+                Thread thread = new Thread(r, "websocket-dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            },
+            (r, executor) -> log.error("WebSocket群发队列已满，丢弃消息"));
+
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
         log.info("客户端：{} 建立连接", sid);
-        sessionMap.put(sid, session);
+        session.getAsyncRemote().setSendTimeout(SEND_TIMEOUT_MILLIS);
+        sessionMap.put(sid, new SessionChannel(sid, session, SESSION_QUEUE_CAPACITY));
     }
     
     /**
@@ -54,29 +74,63 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
+    public void onClose(Session session, @PathParam("sid") String sid) {
         log.info("连接断开：{}", sid);
-        sessionMap.remove(sid);
+        // 同一个sid重新连接后，旧连接的关闭事件不能移除新连接
+        sessionMap.computeIfPresent(sid, (key, channel) -> channel.getSession() == session ? null : channel);
+    }
+
+    /**
+     * 连接发生错误调用的方法
+     * @param sid
+     * @param error
+     */
+    @OnError
+    public void onError(@PathParam("sid") String sid, Throwable error) {
+        log.error("客户端：{} 连接异常：{}", sid, error.getMessage());
     }
     
    
     /**
-     * 群发消息
+     * 群发消息，异步派发到各会话的发送队列后立即返回
      * @param message
      */
     public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            if (session.isOpen()) {
-                try {
-                    //服务器向客户端发送消息
-                    session.getBasicRemote().sendText(message);
-                } catch (IOException e) {
-                    log.error("群发消息失败：{}", e.getMessage());
-                }
+        dispatcher.execute(() -> broadcast(message));
+    }
+
+    /**
+     * 当前连接数
+     * @return
+     */
+    public int getSessionCount() {
+        return sessionMap.size();
+    }
+
+    private void broadcast(String message) {
+        for (SessionChannel channel : sessionMap.values()) {
+            if (!channel.getSession().isOpen()) {
+                sessionMap.remove(channel.getSid(), channel);
+                continue;
+            }
+            if (channel.isStalled(SEND_TIMEOUT_MILLIS) || !channel.offer(message)) {
+                evict(channel);
             }
         }
     }
-    
+
+    /**
+     * 断开长时间不读取消息的慢客户端，避免其占用的队列无限增长
+     * @param channel
+     */
+    private void evict(SessionChannel channel) {
+        log.warn("客户端：{} 接收消息过慢，断开连接", channel.getSid());
+        sessionMap.remove(channel.getSid(), channel);
+        try {
+            channel.getSession().close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "slow consumer"));
+        } catch (IOException e) {
+            log.error("关闭客户端：{} 连接失败：{}", channel.getSid(), e.getMessage());
+        }
+    }
    
 }
@@ -0,0 +1,85 @@
+package com.sky.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sky.entity.Dish;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 菜品套餐缓存返回副本，调用方修改不影响缓存
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CatalogCacheTest {
+
+    @Mock
+    private DishMapper dishMapper;
+    @Mock
+    private SetmealMapper setmealMapper;
+    @Mock
+    private RedisTemplate<String, String> stringRedisTemplate;
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @InjectMocks
+    private CatalogCache catalogCache;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(catalogCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(catalogCache, "localTtl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(catalogCache, "localMaxSize", 100L);
+        catalogCache.init();
+    }
+
+    @Test
+    void returnsCopiesOfCachedDish() {
+        when(dishMapper.getById(1L)).thenReturn(Dish.builder().id(1L).name("宫保鸡丁").build());
+
+        Dish first = catalogCache.getDish(1L);
+        first.setName("被修改");
+        Dish second = catalogCache.getDish(1L);
+
+        assertNotSame(first, second);
+        assertEquals("宫保鸡丁", second.getName());
+        verify(dishMapper, times(1)).getById(1L);
+    }
+
+    @Test
+    void evictReloadsFromDatabase() {
+        when(dishMapper.getById(1L)).thenReturn(Dish.builder().id(1L).name("宫保鸡丁").build());
+        catalogCache.getDish(1L);
+
+        catalogCache.evictDishes(Collections.singletonList(1L));
+        catalogCache.getDish(1L);
+
+        verify(dishMapper, times(2)).getById(1L);
+    }
+
+    @Test
+    void missingDishIsNull() {
+        assertNull(catalogCache.getDish(2L));
+    }
+}
@@ -0,0 +1,173 @@
+package com.sky.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sky.vo.DishVO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 菜品列表两级缓存：进程内缓存命中时不访问Redis，Redis命中时不查询数据库，
+ * 同一分类同时未命中时只加载一次，清理全部缓存时递增版本号使旧key失效
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DishCacheTest {
+
+    private static final Long CATEGORY_ID = 11L;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+    @Mock
+    private RedisTemplate<String, String> stringRedisTemplate;
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Mock
+    private MenuSnapshotCache menuSnapshotCache;
+    @Mock
+    private MenuVersion menuVersion;
+    @InjectMocks
+    private DishCache dishCache;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        ReflectionTestUtils.setField(dishCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dishCache, "localTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(dishCache, "localMaxSize", 100L);
+        ReflectionTestUtils.setField(dishCache, "redisTtl", Duration.ofDays(1));
+        ReflectionTestUtils.setField(dishCache, "staleWindow", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(dishCache, "earlyRefreshBeta", 0.0);
+        dishCache.init();
+    }
+
+    @Test
+    void localHitSkipsRedisAndDatabase() {
+        List<DishVO> first = dishCache.get(CATEGORY_ID, loader());
+        List<DishVO> second = dishCache.get(CATEGORY_ID, loader());
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        verify(valueOperations, times(1)).get(anyString());
+        verify(valueOperations, times(1)).set(anyString(), any(), any(Duration.class));
+    }
+
+    @Test
+    void redisHitFillsLocalCacheWithoutDatabase() {
+        List<DishVO> cached = Collections.singletonList(DishVO.builder().id(1L).name("宫保鸡丁").build());
+        when(valueOperations.get(anyString())).thenReturn(cached);
+
+        assertEquals(cached, dishCache.get(CATEGORY_ID, loader()));
+        assertEquals(cached, dishCache.get(CATEGORY_ID, loader()));
+
+        assertEquals(0, loads.get());
+        verify(valueOperations, times(1)).get(anyString());
+        verify(valueOperations, never()).set(anyString(), any(), any(Duration.class));
+    }
+
+    @Test
+    void emptyListInRedisCountsAsHit() {
+        when(valueOperations.get(anyString())).thenReturn(Collections.emptyList());
+
+        assertEquals(0, dishCache.get(CATEGORY_ID, loader()).size());
+
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void concurrentMissesLoadOnce() throws Exception {
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<List<DishVO>>> results = new ArrayList<>();
+        Supplier<List<DishVO>> slowLoader = () -> {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.singletonList(DishVO.builder().id(2L).name("米饭").build());
+        };
+        for (int i = 0; i < threads; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return dishCache.get(CATEGORY_ID, slowLoader);
+            }));
+        }
+        start.countDown();
+        for (Future<List<DishVO>> result : results) {
+            assertEquals("米饭", result.get(5, TimeUnit.SECONDS).get(0).getName());
+        }
+        pool.shutdown();
+
+        assertEquals(1, loads.get());
+        verify(valueOperations, times(1)).get(anyString());
+    }
+
+    @Test
+    void evictAllSwitchesToNewVersionedKeys() {
+        AtomicLong version = new AtomicLong();
+        when(menuVersion.get()).thenAnswer(invocation -> version.get());
+        when(menuVersion.next()).thenAnswer(invocation -> version.incrementAndGet());
+        List<DishVO> old = Collections.singletonList(DishVO.builder().id(1L).name("旧数据").build());
+        when(valueOperations.get("dish_0_" + CATEGORY_ID)).thenReturn(old);
+
+        assertEquals(old, dishCache.get(CATEGORY_ID, loader()));
+        dishCache.evictAll();
+        List<DishVO> fresh = dishCache.get(CATEGORY_ID, loader());
+
+        assertEquals("米饭", fresh.get(0).getName());
+        assertEquals(1, loads.get());
+        //只递增版本号，不逐个删除旧key
+        verify(redisTemplate, never()).delete(anyString());
+        verify(valueOperations).set(eq("dish_1_" + CATEGORY_ID), any(), any(Duration.class));
+        verify(menuSnapshotCache).invalidateLocal(eq(MenuSnapshotCache.DISH), anyLong());
+    }
+
+    private Supplier<List<DishVO>> loader() {
+        return () -> {
+            loads.incrementAndGet();
+            return Collections.singletonList(DishVO.builder().id(2L).name("米饭").build());
+        };
+    }
+}
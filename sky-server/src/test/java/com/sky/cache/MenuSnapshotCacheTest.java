@@ -0,0 +1,142 @@
+package com.sky.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 菜单快照同时未命中时只构建一次，数据变更后重新构建；
+ * 客户端携带当前版本的ETag时直接返回304
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MenuSnapshotCacheTest {
+
+    @Mock
+    private RedisTemplate<String, String> stringRedisTemplate;
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Mock
+    private MenuVersion menuVersion;
+    @InjectMocks
+    private MenuSnapshotCache menuSnapshotCache;
+
+    private final AtomicInteger builds = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(menuSnapshotCache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(menuSnapshotCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(menuSnapshotCache, "localTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(menuSnapshotCache, "localMaxSize", 100L);
+        ReflectionTestUtils.setField(menuSnapshotCache, "gzipMinSize", 1024);
+        when(menuVersion.get()).thenReturn(3L);
+        when(menuVersion.etag()).thenReturn(MenuVersion.etag(3L));
+        menuSnapshotCache.init();
+    }
+
+    @Test
+    void concurrentMissesBuildOnce() throws Exception {
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<MenuSnapshot>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return menuSnapshotCache.get(MenuSnapshotCache.DISH, 11L, slowLoader());
+            }));
+        }
+        start.countDown();
+        MenuSnapshot first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<MenuSnapshot> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertEquals(1, builds.get());
+        assertEquals(MenuVersion.etag(3L), first.getEtag());
+    }
+
+    @Test
+    void invalidationRebuildsSnapshot() {
+        MenuSnapshot first = menuSnapshotCache.get(MenuSnapshotCache.DISH, 11L, slowLoader());
+        //其他类型的快照不受影响
+        MenuSnapshot category = menuSnapshotCache.get(MenuSnapshotCache.CATEGORY, 1, slowLoader());
+
+        menuSnapshotCache.invalidateLocal(MenuSnapshotCache.DISH, 4L);
+
+        assertNotSame(first, menuSnapshotCache.get(MenuSnapshotCache.DISH, 11L, slowLoader()));
+        assertSame(category, menuSnapshotCache.get(MenuSnapshotCache.CATEGORY, 1, slowLoader()));
+        assertEquals(3, builds.get());
+    }
+
+    @Test
+    void respondsNotModifiedForCurrentEtagWithoutLoading() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "W/" + MenuVersion.etag(3L));
+
+        ResponseEntity<byte[]> response = menuSnapshotCache.respond(MenuSnapshotCache.DISH, 11L, slowLoader(), request);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals(MenuVersion.etag(3L), response.getHeaders().getETag());
+        assertEquals(0, builds.get());
+    }
+
+    @Test
+    void respondsWithSnapshotForStaleEtag() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, MenuVersion.etag(2L));
+
+        ResponseEntity<byte[]> response = menuSnapshotCache.respond(MenuSnapshotCache.DISH, 11L, slowLoader(), request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MenuVersion.etag(3L), response.getHeaders().getETag());
+        assertEquals(1, builds.get());
+    }
+
+    private Supplier<List<String>> slowLoader() {
+        return () -> {
+            builds.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.singletonList("宫保鸡丁");
+        };
+    }
+}
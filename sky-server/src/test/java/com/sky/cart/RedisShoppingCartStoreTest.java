@@ -0,0 +1,137 @@
+package com.sky.cart;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.task.TaskLease;
+
+/**
+ * 购物车写回成功后才移除待写回标记，写回失败或中断的用户下次继续写回
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class RedisShoppingCartStoreTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+    @Mock
+    private SetOperations<String, String> setOperations;
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+    @Mock
+    private ShoppingCartMapper shoppingCartMapper;
+    @Mock
+    private TaskLease taskLease;
+    @InjectMocks
+    private RedisShoppingCartStore store;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(store, "ttl", Duration.ofDays(7));
+        ReflectionTestUtils.setField(store, "flushMaxDuration", Duration.ofSeconds(20));
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(taskLease.runExclusively(anyString(), any(), any(),
+                any())).thenAnswer(invocation -> {
+                    ((Runnable) invocation.getArgument(3)).run();
+                    return true;
+                });
+        when(setOperations.size(RedisShoppingCartStore.DIRTY_KEY)).thenReturn(1L);
+        when(setOperations.distinctRandomMembers(RedisShoppingCartStore.DIRTY_KEY, 100)).thenReturn(Collections.singleton("7"));
+        when(setOperations.move(RedisShoppingCartStore.DIRTY_KEY, "7", RedisShoppingCartStore.FLUSHING_KEY)).thenReturn(true);
+        Map<Object, Object> entries = new HashMap<>();
+        entries.put("d1:#n", "2");
+        entries.put("d1:#s", "{\"dishId\":1,\"name\":\"宫保鸡丁\"}");
+        when(hashOperations.entries(RedisShoppingCartStore.KEY_PREFIX + "7")).thenReturn(entries);
+    }
+
+    @Test
+    void removesFlushingMarkAfterSuccessfulWrite() {
+        store.flush();
+
+        verify(shoppingCartMapper).deleteByUserId(7L);
+        verify(shoppingCartMapper).insertBatch(anyList());
+        verify(setOperations).remove(RedisShoppingCartStore.FLUSHING_KEY, "7");
+        verify(setOperations, never()).move(RedisShoppingCartStore.FLUSHING_KEY, "7", RedisShoppingCartStore.DIRTY_KEY);
+    }
+
+    @Test
+    void movesUserBackToDirtyWhenWriteFails() {
+        doThrow(new IllegalStateException("db down")).when(shoppingCartMapper).insertBatch(anyList());
+
+        store.flush();
+
+        verify(setOperations).move(RedisShoppingCartStore.FLUSHING_KEY, "7", RedisShoppingCartStore.DIRTY_KEY);
+        verify(setOperations, never()).remove(RedisShoppingCartStore.FLUSHING_KEY, "7");
+    }
+
+    @Test
+    void flushesUsersLeftOverFromAnInterruptedRun() {
+        when(setOperations.size(RedisShoppingCartStore.DIRTY_KEY)).thenReturn(0L);
+        when(setOperations.members(RedisShoppingCartStore.FLUSHING_KEY)).thenReturn(Collections.singleton("7"));
+
+        store.flush();
+
+        verify(shoppingCartMapper).deleteByUserId(7L);
+        verify(setOperations).remove(RedisShoppingCartStore.FLUSHING_KEY, "7");
+        verify(setOperations, never()).distinctRandomMembers(anyString(), anyLong());
+    }
+
+    @Test
+    void runStopsAtMaxDurationAndLeavesRestDirty() {
+        ReflectionTestUtils.setField(store, "flushMaxDuration", Duration.ofMillis(50));
+        Set<String> userIds = new LinkedHashSet<>();
+        for (int i = 1; i <= 10; i++) {
+            userIds.add(String.valueOf(i));
+            when(setOperations.move(RedisShoppingCartStore.DIRTY_KEY, String.valueOf(i), RedisShoppingCartStore.FLUSHING_KEY)).thenReturn(true);
+            when(hashOperations.entries(RedisShoppingCartStore.KEY_PREFIX + i)).thenReturn(Collections.singletonMap("d1:#n", "1"));
+        }
+        when(setOperations.size(RedisShoppingCartStore.DIRTY_KEY)).thenReturn(10L);
+        when(setOperations.distinctRandomMembers(RedisShoppingCartStore.DIRTY_KEY, 100)).thenReturn(userIds);
+        //每个用户写回耗时30毫秒
+        doAnswer(invocation -> {
+            Thread.sleep(30);
+            return null;
+        }).when(shoppingCartMapper).deleteByUserId(anyLong());
+
+        store.flush();
+
+        //50毫秒内只处理了前两个用户，其余用户仍在待写回集合中
+        verify(shoppingCartMapper, times(2)).deleteByUserId(anyLong());
+        verify(setOperations, never()).move(RedisShoppingCartStore.DIRTY_KEY, "3", RedisShoppingCartStore.FLUSHING_KEY);
+    }
+}
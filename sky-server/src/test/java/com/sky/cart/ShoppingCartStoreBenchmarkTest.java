@@ -0,0 +1,314 @@
+package com.sky.cart;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.task.TaskLease;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 使用内存模拟Redis和带延迟的数据库，验证连续点击加购不丢失数量，并对比两种购物车存储的加购吞吐量和数据库写入次数
+ * 加购路径上的Redis和数据库使用手写的模拟实现，Mockito每次调用的开销会掩盖被测的差异
+ */
+@Slf4j
+class ShoppingCartStoreBenchmarkTest {
+
+    private static final int USERS = 4;
+
+    //每个用户两个线程同时连续点击
+    private static final int THREADS_PER_USER = 2;
+
+    private static final int TAPS = 100;
+
+    private static final int WARMUP = 50;
+
+    //模拟每条Redis命令的网络往返
+    private static final long REDIS_NANOS = 100_000;
+
+    //模拟每条数据库语句的耗时，同一用户同一商品的upsert持有行锁直到提交
+    private static final long DB_NANOS = 2_000_000;
+
+    //模拟Redis中的哈希和集合
+    private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Set<String> flushing = ConcurrentHashMap.newKeySet();
+
+    //各条数据库语句的执行次数
+    private final Map<String, AtomicInteger> dbStatements = new ConcurrentHashMap<>();
+    private final Map<Long, Object> rowLocks = new ConcurrentHashMap<>();
+
+    private RedisShoppingCartStore redisStore;
+    private MysqlShoppingCartStore mysqlStore;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        ShoppingCartMapper shoppingCartMapper = proxy(ShoppingCartMapper.class, (method, args) -> {
+            switch (method) {
+                case "list":
+                    return new ArrayList<>();
+                case "insertOrIncrement":
+                    synchronized (rowLocks.computeIfAbsent(((ShoppingCart) args[0]).getUserId(), id -> new Object())) {
+                        return dbStatement(method);
+                    }
+                default:
+                    return dbStatement(method);
+            }
+        });
+
+        TaskLease taskLease = mock(TaskLease.class);
+        when(taskLease.runExclusively(anyString(), any(), any(), any())).thenAnswer(inv -> {
+            inv.<Runnable>getArgument(3).run();
+            return true;
+        });
+
+        redisStore = new RedisShoppingCartStore();
+        ReflectionTestUtils.setField(redisStore, "redisTemplate", new InMemoryRedisTemplate());
+        ReflectionTestUtils.setField(redisStore, "shoppingCartMapper", shoppingCartMapper);
+        ReflectionTestUtils.setField(redisStore, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(redisStore, "taskLease", taskLease);
+        ReflectionTestUtils.setField(redisStore, "ttl", Duration.ofDays(7));
+        ReflectionTestUtils.setField(redisStore, "flushMaxDuration", Duration.ofSeconds(20));
+
+        mysqlStore = new MysqlShoppingCartStore();
+        ReflectionTestUtils.setField(mysqlStore, "shoppingCartMapper", shoppingCartMapper);
+
+        executor = Executors.newFixedThreadPool(USERS * THREADS_PER_USER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentDoubleTapsAreAllCounted() throws Exception {
+        tapConcurrently(redisStore);
+
+        for (long userId = 1; userId <= USERS; userId++) {
+            List<ShoppingCart> items = redisStore.list(userId);
+            assertEquals(1, items.size());
+            assertEquals(THREADS_PER_USER * TAPS, items.get(0).getNumber());
+            assertEquals("宫保鸡丁", items.get(0).getName());
+        }
+        assertEquals(USERS, dirty.size());
+
+        redisStore.flush();
+
+        assertTrue(dirty.isEmpty());
+        assertTrue(flushing.isEmpty());
+        assertEquals(USERS, dbStatements.get("insertBatch").get());
+    }
+
+    @Test
+    void redisStoreOutpacesPerTapDatabaseWrites() throws Exception {
+        //预热，排除类加载、JIT编译和JSON序列化初始化的影响
+        for (int i = 0; i < WARMUP; i++) {
+            tap(mysqlStore, 0L);
+            tap(redisStore, 0L);
+        }
+        hashes.clear();
+        dirty.clear();
+        dbStatements.clear();
+
+        long mysqlNanos = tapConcurrently(mysqlStore);
+        int mysqlStatements = totalStatements();
+        dbStatements.clear();
+
+        long redisNanos = tapConcurrently(redisStore);
+        redisStore.flush();
+        int redisStatements = totalStatements();
+
+        int taps = USERS * THREADS_PER_USER * TAPS;
+        log.info("{}次加购，MySQL存储：{}条数据库语句，{}次/秒；Redis存储：写回{}条数据库语句，{}次/秒",
+                taps, mysqlStatements, taps * 1_000_000_000L / mysqlNanos,
+                redisStatements, taps * 1_000_000_000L / redisNanos);
+
+        //每次点击一条upsert，同一用户的点击在行锁上排队
+        assertEquals(taps, mysqlStatements);
+        //写回时每个用户一次删除和一次批量插入，与点击次数无关
+        assertEquals(USERS, dbStatements.get("deleteByUserId").get());
+        assertEquals(USERS, dbStatements.get("insertBatch").get());
+        assertEquals(USERS * 2, redisStatements);
+        assertTrue(redisNanos < mysqlNanos / 2, "Redis存储" + redisNanos + "ns，MySQL存储" + mysqlNanos + "ns");
+    }
+
+    /**
+     * 每个用户两个线程同时对同一菜品连续加购
+     * @return 耗时，单位：纳秒
+     */
+    private long tapConcurrently(ShoppingCartStore store) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (long userId = 1; userId <= USERS; userId++) {
+            for (int t = 0; t < THREADS_PER_USER; t++) {
+                long id = userId;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < TAPS; i++) {
+                        tap(store, id);
+                    }
+                    return null;
+                }));
+            }
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        return System.nanoTime() - begin;
+    }
+
+    private void tap(ShoppingCartStore store, Long userId) {
+        store.add(ShoppingCart.builder().userId(userId).dishId(1L).dishFlavor("微辣").build(), 1,
+                () -> ShoppingCart.builder().name("宫保鸡丁").dishId(1L).dishFlavor("微辣")
+                        .amount(new BigDecimal("32")).build());
+    }
+
+    private int totalStatements() {
+        return dbStatements.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    private Object dbStatement(String method) {
+        dbStatements.computeIfAbsent(method, m -> new AtomicInteger()).incrementAndGet();
+        LockSupport.parkNanos(DB_NANOS);
+        return null;
+    }
+
+    private Map<String, String> fields(Object key) {
+        return hashes.computeIfAbsent((String) key, k -> new ConcurrentHashMap<>());
+    }
+
+    private static <T> T redis(T result) {
+        LockSupport.parkNanos(REDIS_NANOS);
+        return result;
+    }
+
+    /**
+     * 按方法名处理接口调用
+     */
+    private interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method.getName(), args));
+    }
+
+    /**
+     * 只实现购物车用到的命令
+     */
+    private class InMemoryRedisTemplate extends RedisTemplate<String, String> {
+
+        @SuppressWarnings("unchecked")
+        private final HashOperations<String, Object, Object> hashOperations = proxy(HashOperations.class, (method, args) -> {
+            switch (method) {
+                case "hasKey":
+                    return redis(hashes.getOrDefault((String) args[0], new HashMap<>()).containsKey(args[1]));
+                case "putIfAbsent":
+                    return redis(fields(args[0]).putIfAbsent((String) args[1], (String) args[2]) == null);
+                case "increment":
+                    return redis(Long.valueOf(fields(args[0]).merge((String) args[1], String.valueOf(args[2]),
+                            (a, b) -> String.valueOf(Long.parseLong(a) + Long.parseLong(b)))));
+                case "entries":
+                    return redis(new HashMap<>(fields(args[0])));
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+
+        @SuppressWarnings("unchecked")
+        private final SetOperations<String, String> setOperations = proxy(SetOperations.class, (method, args) -> {
+            Set<String> set = RedisShoppingCartStore.DIRTY_KEY.equals(args[0]) ? dirty : flushing;
+            switch (method) {
+                case "add":
+                    return redis(set.add(((String[]) args[1])[0]) ? 1L : 0L);
+                case "members":
+                case "distinctRandomMembers":
+                    return redis(new HashSet<>(set));
+                case "size":
+                    return redis((long) set.size());
+                case "move":
+                    return redis(set.remove(args[1]) && flushing.add((String) args[1]));
+                case "remove":
+                    return redis(set.remove(((Object[]) args[1])[0]) ? 1L : 0L);
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+
+        @Override
+        public Boolean hasKey(String key) {
+            return redis(hashes.containsKey(key));
+        }
+
+        @Override
+        public Boolean expire(String key, Duration timeout) {
+            return redis(true);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            //LOAD_SCRIPT：key不存在时写入从数据库加载的字段
+            hashes.computeIfAbsent(keys.get(0), k -> {
+                Map<String, String> fields = new ConcurrentHashMap<>();
+                for (int i = 1; i + 1 < args.length; i += 2) {
+                    fields.put((String) args[i], (String) args[i + 1]);
+                }
+                return fields;
+            });
+            return (T) redis(Long.valueOf(1));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <HK, HV> HashOperations<String, HK, HV> opsForHash() {
+            return (HashOperations<String, HK, HV>) (HashOperations<String, ?, ?>) hashOperations;
+        }
+
+        @Override
+        public SetOperations<String, String> opsForSet() {
+            return setOperations;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.sky.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sky.properties.HttpClientProperties;
+import com.sky.utils.HttpClientUtil;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 使用JDK HttpServer模拟外部接口，对比连接池和每次新建HttpClient的连接数和耗时
+ */
+@Slf4j
+class HttpClientConfigurationTest {
+
+    private static final int REQUESTS = 100;
+
+    private static final int WARMUP = 20;
+
+    //模拟外部接口建立连接的耗时（网络往返、TLS握手），本机回环地址上建立连接几乎没有耗时
+    private static final long CONNECT_MILLIS = 10;
+
+    static {
+        //JDK HttpServer默认开启Nagle算法，响应头和响应体分开发送，长连接上每次请求会多等待一次延迟确认（约40ms）
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server;
+    private String url;
+
+    //服务端看到的客户端地址，每个TCP连接对应一个端口
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private final HttpClientConfiguration configuration = new HttpClientConfiguration();
+    private final HttpClientProperties properties = new HttpClientProperties();
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient pooledClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/geocoding", exchange -> {
+            if (clientPorts.add(exchange.getRemoteAddress().getPort())) {
+                sleep(CONNECT_MILLIS);
+            }
+            byte[] body = "{\"status\":0}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/geocoding";
+
+        connectionManager = configuration.httpConnectionManager(properties, new SimpleMeterRegistry());
+        pooledClient = configuration.httpClient(connectionManager,
+                configuration.httpRequestConfig(properties),
+                configuration.httpKeepAliveStrategy(properties),
+                properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        pooledClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void pooledClientReusesConnection() {
+        HttpClientUtil httpClientUtil = configuration.httpClientUtil(pooledClient);
+
+        long pooledNanos = timeRequests(() -> assertEquals("{\"status\":0}", httpClientUtil.doGet(url, null)));
+        int pooledConnections = clientPorts.size();
+
+        long newClientNanos = timeRequests(() -> {
+            //改造前的做法：每次请求新建HttpClient，用完即关闭
+            try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+                assertEquals("{\"status\":0}", new HttpClientUtil(httpClient).doGet(url, null));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        int newClientConnections = clientPorts.size();
+
+        log.info("{}次请求，连接池：{}个连接，平均{}us；每次新建HttpClient：{}个连接，平均{}us",
+                REQUESTS, pooledConnections, pooledNanos / REQUESTS / 1000,
+                newClientConnections, newClientNanos / REQUESTS / 1000);
+        assertEquals(1, pooledConnections);
+        assertEquals(REQUESTS, newClientConnections);
+        assertTrue(newClientNanos >= REQUESTS * CONNECT_MILLIS * 1_000_000);
+        assertTrue(pooledNanos < newClientNanos / 2);
+    }
+
+    @Test
+    void concurrentRequestsShareBoundedPool() throws Exception {
+        HttpClientUtil httpClientUtil = configuration.httpClientUtil(pooledClient);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(executor.submit(() -> httpClientUtil.doGet(url, null)));
+        }
+        for (Future<String> future : futures) {
+            assertEquals("{\"status\":0}", future.get());
+        }
+        executor.shutdown();
+
+        //连接数不超过并发数，请求结束后连接全部归还到连接池
+        assertTrue(clientPorts.size() <= threads, "建立了" + clientPorts.size() + "个连接");
+        assertEquals(0, connectionManager.getTotalStats().getLeased());
+        assertEquals(clientPorts.size(), connectionManager.getTotalStats().getAvailable());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long timeRequests(Runnable request) {
+        //预热，排除类加载和JIT编译的影响
+        for (int i = 0; i < WARMUP; i++) {
+            request.run();
+        }
+        clientPorts.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            request.run();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,116 @@
+package com.sky.geo;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sky.exception.OrderBusinessException;
+
+/**
+ * 直线距离明显超限或明显在范围内时不调用路线规划，临界区间以配送距离为准
+ */
+@ExtendWith(MockitoExtension.class)
+class DeliveryRangeCheckerTest {
+
+    private static final String SHOP = "116.404,39.915";
+    //纬度每0.01度约1112米
+    private static final String NEAR = "116.404,39.935";
+    private static final String EDGE = "116.404,39.955";
+    private static final String FAR = "116.404,39.965";
+
+    @Mock
+    private Geocoder geocoder;
+    @Mock
+    private DistanceProvider distanceProvider;
+    @InjectMocks
+    private DeliveryRangeChecker deliveryRangeChecker;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(deliveryRangeChecker, "maxDistance", 5000);
+        ReflectionTestUtils.setField(deliveryRangeChecker, "acceptRatio", 0.5);
+        lenient().when(geocoder.shopLocation()).thenReturn(SHOP);
+    }
+
+    @Test
+    void nearAddressIsAcceptedWithoutRoutePlanning() {
+        when(geocoder.geocode("近")).thenReturn(NEAR);
+
+        assertDoesNotThrow(() -> deliveryRangeChecker.check("近"));
+
+        verify(distanceProvider, never()).distance(anyString(), anyString());
+    }
+
+    @Test
+    void farAddressIsRejectedWithoutRoutePlanning() {
+        when(geocoder.geocode("远")).thenReturn(FAR);
+
+        assertThrows(OrderBusinessException.class, () -> deliveryRangeChecker.check("远"));
+
+        verify(distanceProvider, never()).distance(anyString(), anyString());
+    }
+
+    @Test
+    void edgeAddressUsesDistanceProvider() {
+        when(geocoder.geocode("临界")).thenReturn(EDGE);
+        when(distanceProvider.distance(SHOP, EDGE)).thenReturn(4900);
+
+        assertDoesNotThrow(() -> deliveryRangeChecker.check("临界"));
+
+        verify(distanceProvider).distance(SHOP, EDGE);
+    }
+
+    @Test
+    void edgeAddressBeyondRoadDistanceIsRejected() {
+        when(geocoder.geocode("临界")).thenReturn(EDGE);
+        when(distanceProvider.distance(SHOP, EDGE)).thenReturn(6200);
+
+        assertThrows(OrderBusinessException.class, () -> deliveryRangeChecker.check("临界"));
+    }
+
+    @Test
+    void failedRoutePlanningIsRejected() {
+        when(geocoder.geocode("临界")).thenReturn(EDGE);
+        when(distanceProvider.distance(SHOP, EDGE)).thenReturn(null);
+
+        assertThrows(OrderBusinessException.class, () -> deliveryRangeChecker.check("临界"));
+    }
+
+    @Test
+    void unresolvedAddressIsRejected() {
+        when(geocoder.geocode("未知")).thenReturn(null);
+
+        assertThrows(OrderBusinessException.class, () -> deliveryRangeChecker.check("未知"));
+
+        verify(distanceProvider, never()).distance(anyString(), anyString());
+    }
+
+    @Test
+    void offlineGeocoderIsStableAndStaysWithinRadius() {
+        OfflineGeocoder offlineGeocoder = new OfflineGeocoder();
+        ReflectionTestUtils.setField(offlineGeocoder, "shopLocation", SHOP);
+        ReflectionTestUtils.setField(offlineGeocoder, "radius", 6000.0);
+
+        for (int i = 0; i < 100; i++) {
+            String address = "北京市东城区测试路" + i + "号";
+            String location = offlineGeocoder.geocode(address);
+            assertEquals(location, offlineGeocoder.geocode(" " + address + " "));
+            assertTrue(GeoUtils.haversine(SHOP, location) <= 6001);
+        }
+        assertEquals(EDGE, offlineGeocoder.geocode(EDGE));
+    }
+}
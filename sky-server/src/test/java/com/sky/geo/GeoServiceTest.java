@@ -0,0 +1,124 @@
+package com.sky.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 同一地址和路线只调用一次百度地图，缓存过期或被清理后重新调用
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class GeoServiceTest {
+
+    private static final String SHOP = "116.404,39.915";
+    private static final String USER = "116.404,39.955";
+
+    @Mock
+    private BaiduMapClient baiduMapClient;
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    //模拟Redis中的数据
+    private final Map<String, String> redis = new HashMap<>();
+
+    private GeoCache geoCache;
+    private GeoService geoService;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(inv -> redis.get(inv.<String>getArgument(0)));
+        doAnswer(inv -> redis.put(inv.getArgument(0), inv.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+
+        geoCache = new GeoCache();
+        ReflectionTestUtils.setField(geoCache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(geoCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(geoCache, "localTtl", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(geoCache, "redisTtl", Duration.ofDays(7));
+        ReflectionTestUtils.setField(geoCache, "localMaxSize", 100L);
+        geoCache.init();
+
+        geoService = new GeoService();
+        ReflectionTestUtils.setField(geoService, "baiduMapClient", baiduMapClient);
+        ReflectionTestUtils.setField(geoService, "geoCache", geoCache);
+        ReflectionTestUtils.setField(geoService, "shopAddress", "北京市东城区天安门");
+
+        when(baiduMapClient.geocode("北京市东城区天安门")).thenReturn(SHOP);
+        when(baiduMapClient.geocode("北京市东城区测试路1号")).thenReturn(USER);
+        when(baiduMapClient.drivingDistance(SHOP, USER)).thenReturn(4800);
+    }
+
+    @Test
+    void repeatedChecksCallBaiduOnce() {
+        for (int i = 0; i < 20; i++) {
+            assertEquals(SHOP, geoService.getShopLocation());
+            //空白不同的写法命中同一缓存
+            assertEquals(USER, geoService.geocode(i % 2 == 0 ? "北京市东城区测试路1号" : "北京市 东城区 测试路1号"));
+            assertEquals(4800, geoService.drivingDistance(SHOP, USER));
+        }
+
+        verify(baiduMapClient, times(1)).geocode("北京市东城区天安门");
+        verify(baiduMapClient, times(1)).geocode("北京市东城区测试路1号");
+        verify(baiduMapClient, times(1)).drivingDistance(SHOP, USER);
+    }
+
+    @Test
+    void localExpiryIsServedFromRedis() throws InterruptedException {
+        geoService.geocode("北京市东城区测试路1号");
+        Thread.sleep(300);
+
+        assertEquals(USER, geoService.geocode("北京市东城区测试路1号"));
+
+        verify(baiduMapClient, times(1)).geocode("北京市东城区测试路1号");
+    }
+
+    @Test
+    void missAfterBothTiersExpire() throws InterruptedException {
+        geoService.geocode("北京市东城区测试路1号");
+        geoService.drivingDistance(SHOP, USER);
+        Thread.sleep(300);
+        //Redis中的数据过期或被清理
+        redis.clear();
+
+        assertEquals(USER, geoService.geocode("北京市东城区测试路1号"));
+        assertEquals(4800, geoService.drivingDistance(SHOP, USER));
+
+        verify(baiduMapClient, times(2)).geocode("北京市东城区测试路1号");
+        verify(baiduMapClient, times(2)).drivingDistance(SHOP, USER);
+    }
+
+    @Test
+    void failedLookupIsNotCached() {
+        when(baiduMapClient.geocode("查无此地")).thenReturn(null);
+
+        geoService.geocode("查无此地");
+        geoService.geocode("查无此地");
+
+        verify(baiduMapClient, times(2)).geocode("查无此地");
+    }
+}
@@ -0,0 +1,136 @@
+package com.sky.outbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sky.entity.OrderEvent;
+import com.sky.mapper.OrderEventMapper;
+import com.sky.task.TaskLease;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 投递失败的事件按指数退避重试，不在同一轮中空转，同一订单后续的事件等待前面的事件投递成功
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OrderEventRelayTest {
+
+    @Mock
+    private OrderEventMapper orderEventMapper;
+    @Mock
+    private OrderEventHandler handler;
+    @Mock
+    private TaskLease taskLease;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OrderEventRelay orderEventRelay;
+
+    @BeforeEach
+    void setUp() {
+        orderEventRelay = new OrderEventRelay();
+        ReflectionTestUtils.setField(orderEventRelay, "orderEventMapper", orderEventMapper);
+        ReflectionTestUtils.setField(orderEventRelay, "handlers", Collections.singletonList(handler));
+        ReflectionTestUtils.setField(orderEventRelay, "taskLease", taskLease);
+        ReflectionTestUtils.setField(orderEventRelay, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(orderEventRelay, "batchSize", 2);
+        ReflectionTestUtils.setField(orderEventRelay, "maxAttempts", 3);
+        ReflectionTestUtils.setField(orderEventRelay, "initialBackoff", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(orderEventRelay, "maxBackoff", Duration.ofMinutes(5));
+        when(handler.supports(any())).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(3).run();
+            return true;
+        }).when(taskLease).runExclusively(any(), any(), any(), any());
+    }
+
+    @Test
+    void failedBatchIsRetriedLaterWithBackoff() {
+        //接收方故障，整批投递失败
+        when(orderEventMapper.getPending(any(), anyInt())).thenReturn(Arrays.asList(event(1L, 1L, 0), event(2L, 2L, 2)));
+        doThrow(new IllegalStateException("down")).when(handler).handle(any());
+
+        LocalDateTime before = LocalDateTime.now();
+        relay();
+
+        //整批失败后不再立即重新查询
+        verify(orderEventMapper, times(1)).getPending(any(), anyInt());
+        ArgumentCaptor<LocalDateTime> nextRetryTime = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(orderEventMapper).markFailed(eq(1L), nextRetryTime.capture(), eq(3));
+        assertFalse(nextRetryTime.getValue().isBefore(before.plusSeconds(5)));
+        verify(orderEventMapper).markFailed(eq(2L), nextRetryTime.capture(), eq(3));
+        //第3次失败的事件不再重试并告警
+        assertEquals(1, meterRegistry.counter("sky.order.outbox", "type", OrderEvent.PAID, "result", "failed").count());
+        assertEquals(1, meterRegistry.counter("sky.order.outbox", "type", OrderEvent.PAID, "result", "dead").count());
+        verify(orderEventMapper, never()).markPublished(anyList());
+    }
+
+    @Test
+    void laterEventOfFailedOrderWaits() {
+        OrderEvent first = event(1L, 1L, 0);
+        OrderEvent second = event(2L, 1L, 0);
+        when(orderEventMapper.getPending(any(), anyInt())).thenReturn(Arrays.asList(first, second));
+        doThrow(new IllegalStateException("down")).when(handler).handle(first);
+
+        relay();
+
+        verify(handler, never()).handle(second);
+        verify(orderEventMapper).markFailed(eq(1L), any(), anyInt());
+        verify(orderEventMapper, never()).markFailed(eq(2L), any(), anyInt());
+        verify(orderEventMapper, never()).markPublished(anyList());
+    }
+
+    @Test
+    void fullBatchesKeepRelayingWhileDelivering() {
+        when(orderEventMapper.getPending(any(), anyInt()))
+                .thenReturn(Arrays.asList(event(1L, 1L, 0), event(2L, 2L, 0)))
+                .thenReturn(Collections.singletonList(event(3L, 3L, 0)));
+
+        relay();
+
+        verify(orderEventMapper, times(2)).getPending(any(), anyInt());
+        verify(orderEventMapper, never()).markFailed(anyLong(), any(), anyInt());
+        verify(orderEventMapper).markPublished(Arrays.asList(1L, 2L));
+        verify(orderEventMapper).markPublished(Collections.singletonList(3L));
+    }
+
+    private void relay() {
+        ReflectionTestUtils.invokeMethod(orderEventRelay, "relay");
+    }
+
+    private OrderEvent event(Long id, Long orderId, int attempts) {
+        return OrderEvent.builder()
+                .id(id)
+                .orderId(orderId)
+                .type(OrderEvent.PAID)
+                .status(OrderEvent.PENDING)
+                .attempts(attempts)
+                .build();
+    }
+}
@@ -0,0 +1,145 @@
+package com.sky.pay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sky.entity.PayNotify;
+import com.sky.mapper.PayNotifyMapper;
+import com.sky.service.OrderService;
+import com.sky.task.TaskLease;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 两个节点并发收到同一笔交易的1000次重复通知，只写入一次、处理一次
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PayNotifyInboxTest {
+
+    private static final String TRANSACTION_ID = "4200001234";
+    private static final String OUT_TRADE_NO = "1700000000000";
+
+    @Mock
+    private PayNotifyMapper payNotifyMapper;
+    @Mock
+    private OrderService orderService;
+    @Mock
+    private RedisTemplate<String, String> stringRedisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<PayNotifyInbox> nodes = new ArrayList<>();
+
+    //模拟pay_notify表的唯一索引和Redis中的去重标记
+    private final Set<String> transactionIds = ConcurrentHashMap.newKeySet();
+    private final Set<String> redisKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inserted = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        when(payNotifyMapper.insertIgnore(any())).thenAnswer(invocation -> {
+            //放大写入耗时，让重复通知在写入期间到达
+            Thread.sleep(5);
+            PayNotify payNotify = invocation.getArgument(0);
+            if (!transactionIds.add(payNotify.getTransactionId())) {
+                return 0;
+            }
+            payNotify.setId(1L);
+            inserted.incrementAndGet();
+            return 1;
+        });
+        when(stringRedisTemplate.hasKey(anyString())).thenAnswer(invocation -> redisKeys.contains(invocation.<String>getArgument(0)));
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        doAnswer(invocation -> redisKeys.add(invocation.getArgument(0)))
+                .when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+
+        for (int i = 0; i < 2; i++) {
+            PayNotifyInbox inbox = new PayNotifyInbox();
+            ReflectionTestUtils.setField(inbox, "payNotifyMapper", payNotifyMapper);
+            ReflectionTestUtils.setField(inbox, "orderService", orderService);
+            ReflectionTestUtils.setField(inbox, "stringRedisTemplate", stringRedisTemplate);
+            ReflectionTestUtils.setField(inbox, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+            ReflectionTestUtils.setField(inbox, "taskLease", mock(TaskLease.class));
+            ReflectionTestUtils.setField(inbox, "meterRegistry", meterRegistry);
+            ReflectionTestUtils.setField(inbox, "seenTtl", Duration.ofDays(1));
+            ReflectionTestUtils.setField(inbox, "localMaxSize", 10000L);
+            ReflectionTestUtils.setField(inbox, "maxAttempts", 10);
+            inbox.init();
+            nodes.add(inbox);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (PayNotifyInbox inbox : nodes) {
+            inbox.destroy();
+        }
+    }
+
+    @Test
+    void duplicateCallbacksAreInsertedAndProcessedOnce() throws Exception {
+        int callbacks = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < callbacks; i++) {
+            PayNotifyInbox inbox = nodes.get(i % nodes.size());
+            futures.add(executor.submit(() -> {
+                start.await();
+                return inbox.accept(TRANSACTION_ID, OUT_TRADE_NO);
+            }));
+        }
+        start.countDown();
+        int accepted = 0;
+        for (Future<Boolean> future : futures) {
+            if (future.get()) {
+                accepted++;
+            }
+        }
+        executor.shutdown();
+
+        verify(orderService, timeout(5000)).paySuccess(OUT_TRADE_NO);
+        verify(payNotifyMapper, timeout(5000)).markProcessed(1L);
+        assertEquals(1, accepted);
+        assertEquals(1, inserted.get());
+        verify(orderService, times(1)).paySuccess(anyString());
+        verify(payNotifyMapper, times(1)).markProcessed(anyLong());
+        assertEquals(1, meterRegistry.counter("sky.pay.notify", "result", "accepted").count());
+        assertEquals(callbacks - 1, meterRegistry.counter("sky.pay.notify", "result", "duplicate").count());
+    }
+}
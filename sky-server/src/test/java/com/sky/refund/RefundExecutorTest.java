@@ -0,0 +1,159 @@
+package com.sky.refund;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sky.entity.OrderRefund;
+import com.sky.mapper.OrderRefundMapper;
+import com.sky.task.TaskLease;
+import com.sky.utils.WeChatPayUtil;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 使用模拟的慢速、故障支付网关：退款在后台线程申请，失败按指数退避重试，连续失败后熔断
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class RefundExecutorTest {
+
+    //模拟网关的响应时间
+    private static final long GATEWAY_LATENCY_MILLIS = 500;
+
+    @Mock
+    private OrderRefundMapper orderRefundMapper;
+    @Mock
+    private WeChatPayUtil weChatPayUtil;
+    @Mock
+    private TaskLease taskLease;
+    @InjectMocks
+    private RefundExecutor refundExecutor;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(refundExecutor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(refundExecutor, "poolSize", 1);
+        ReflectionTestUtils.setField(refundExecutor, "queueCapacity", 10);
+        ReflectionTestUtils.setField(refundExecutor, "maxAttempts", 8);
+        ReflectionTestUtils.setField(refundExecutor, "initialBackoff", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(refundExecutor, "maxBackoff", Duration.ofMinutes(30));
+        ReflectionTestUtils.setField(refundExecutor, "processingTimeout", Duration.ofMinutes(2));
+        ReflectionTestUtils.setField(refundExecutor, "failureThreshold", 2);
+        ReflectionTestUtils.setField(refundExecutor, "openDuration", Duration.ofSeconds(30));
+        refundExecutor.init();
+
+        when(orderRefundMapper.insertIgnore(any())).thenAnswer(invocation -> {
+            invocation.<OrderRefund>getArgument(0).setId(ids.incrementAndGet());
+            return 1;
+        });
+        when(orderRefundMapper.claim(anyLong(), any(), any())).thenReturn(1);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        refundExecutor.destroy();
+    }
+
+    @Test
+    void submitReturnsBeforeSlowGatewayResponds() throws Exception {
+        when(weChatPayUtil.refund(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(GATEWAY_LATENCY_MILLIS);
+            return "{\"refund_id\":\"50000000\"}";
+        });
+
+        long start = System.nanoTime();
+        refundExecutor.submit(1L, "1700000000001", new BigDecimal("10.00"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < GATEWAY_LATENCY_MILLIS / 2, "submit耗时" + elapsedMillis + "ms");
+        verify(orderRefundMapper, never()).markSuccess(anyLong(), anyString());
+        verify(orderRefundMapper, timeout(2000)).markSuccess(1L, "50000000");
+    }
+
+    @Test
+    void failedRefundIsRetriedWithExponentialBackoff() throws Exception {
+        when(weChatPayUtil.refund(anyString(), anyString(), any(), any())).thenThrow(new IllegalStateException("timeout"));
+        //第3次失败：等待时间为10s * 2^2 = 40s，随机取20s到40s之间
+        when(orderRefundMapper.getDue(any(), anyInt())).thenReturn(Collections.singletonList(refund(7L, 2)));
+        executeDue();
+
+        ArgumentCaptor<LocalDateTime> nextRetryTime = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(orderRefundMapper, timeout(2000)).markRetry(eq(7L), nextRetryTime.capture(), eq("timeout"), eq(8));
+        LocalDateTime now = LocalDateTime.now();
+        assertFalse(nextRetryTime.getValue().isBefore(now.plusSeconds(19)));
+        assertFalse(nextRetryTime.getValue().isAfter(now.plusSeconds(40)));
+    }
+
+    @Test
+    void breakerOpensAfterConsecutiveFailuresAndDefersRefunds() throws Exception {
+        when(weChatPayUtil.refund(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            throw new IllegalStateException("gateway down");
+        });
+
+        for (long orderId = 1; orderId <= 4; orderId++) {
+            refundExecutor.submit(orderId, "170000000000" + orderId, new BigDecimal("10.00"));
+        }
+
+        //连续失败2次后熔断，后面的退款不再调用网关，推迟到熔断结束后再申请
+        ArgumentCaptor<LocalDateTime> deferredTo = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(orderRefundMapper, timeout(2000).times(2)).reschedule(anyLong(), deferredTo.capture());
+        verify(weChatPayUtil, times(2)).refund(anyString(), anyString(), any(), any());
+        verify(orderRefundMapper, times(2)).markRetry(anyLong(), any(), anyString(), eq(8));
+        assertTrue(deferredTo.getValue().isAfter(LocalDateTime.now().plusSeconds(20)));
+        assertEquals(2, meterRegistry.counter("sky.refund", "result", "short-circuited").count());
+    }
+
+    private void executeDue() {
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(3).run();
+            return true;
+        }).when(taskLease).runExclusively(any(), any(), any(), any());
+        refundExecutor.dispatchDue();
+    }
+
+    private OrderRefund refund(Long id, int attempts) {
+        return OrderRefund.builder()
+                .id(id)
+                .orderId(id)
+                .orderNumber("170000000000" + id)
+                .outRefundNo("170000000000" + id)
+                .status(OrderRefund.PENDING)
+                .attempts(attempts)
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.sky.service.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+import com.sky.mapper.DailyBusinessStatsMapper;
+
+/**
+ * 营业数据增量在事务提交后按日期合并写入，查询时重建缺失或未重建过的历史日期
+ */
+@ExtendWith(MockitoExtension.class)
+class DailyBusinessStatsServiceImplTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Mock
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+
+    private DailyBusinessStatsServiceImpl statsService;
+
+    @BeforeEach
+    void setUp() {
+        statsService = new DailyBusinessStatsServiceImpl();
+        ReflectionTestUtils.setField(statsService, "dailyBusinessStatsMapper", dailyBusinessStatsMapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void incrementsWaitForCommitAndMergePerDate() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        statsService.orderCreated(order(TODAY, null));
+        statsService.orderCompleted(order(TODAY, new BigDecimal("30")));
+        statsService.userRegistered(User.builder().createTime(TODAY.atTime(9, 0)).build());
+
+        //订单事务中不访问汇总表
+        statsService.flush();
+        verifyNoInteractions(dailyBusinessStatsMapper);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        when(dailyBusinessStatsMapper.increment(any(), anyInt(), anyInt(), anyInt(), any(), anyInt())).thenReturn(1);
+        statsService.flush();
+
+        verify(dailyBusinessStatsMapper, times(1)).increment(TODAY, 1, 1, 0, new BigDecimal("30"), 1);
+        statsService.flush();
+        verify(dailyBusinessStatsMapper, times(1)).increment(any(), anyInt(), anyInt(), anyInt(), any(), anyInt());
+    }
+
+    @Test
+    void rolledBackTransactionIsNotCounted() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        statsService.orderCancelled(order(TODAY, null));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        statsService.flush();
+
+        verifyNoInteractions(dailyBusinessStatsMapper);
+    }
+
+    @Test
+    void batchIsGroupedByOrderDate() {
+        LocalDate yesterday = TODAY.minusDays(1);
+        when(dailyBusinessStatsMapper.increment(any(), anyInt(), anyInt(), anyInt(), any(), anyInt())).thenReturn(1);
+
+        statsService.ordersCompleted(Arrays.asList(
+                order(yesterday, new BigDecimal("10")),
+                order(yesterday, new BigDecimal("20")),
+                order(TODAY, new BigDecimal("5"))));
+        statsService.flush();
+
+        verify(dailyBusinessStatsMapper).increment(yesterday, 0, 2, 0, new BigDecimal("30"), 0);
+        verify(dailyBusinessStatsMapper).increment(TODAY, 0, 1, 0, new BigDecimal("5"), 0);
+    }
+
+    @Test
+    void missingRowIsInsertedBeforeIncrement() {
+        when(dailyBusinessStatsMapper.increment(TODAY, 1, 0, 0, BigDecimal.ZERO, 0)).thenReturn(0, 1);
+
+        statsService.orderCreated(order(TODAY, null));
+        statsService.flush();
+
+        verify(dailyBusinessStatsMapper).insertIgnore(TODAY);
+        verify(dailyBusinessStatsMapper, times(2)).increment(TODAY, 1, 0, 0, BigDecimal.ZERO, 0);
+    }
+
+    @Test
+    void failedFlushIsRetriedWithNewIncrements() {
+        when(dailyBusinessStatsMapper.increment(TODAY, 1, 0, 0, BigDecimal.ZERO, 0)).thenThrow(new RuntimeException("db down"));
+        when(dailyBusinessStatsMapper.increment(TODAY, 2, 0, 0, BigDecimal.ZERO, 0)).thenReturn(1);
+
+        statsService.orderCreated(order(TODAY, null));
+        statsService.flush();
+        statsService.orderCreated(order(TODAY, null));
+        statsService.flush();
+
+        verify(dailyBusinessStatsMapper).increment(TODAY, 2, 0, 0, BigDecimal.ZERO, 0);
+    }
+
+    @Test
+    void rebuildDropsPendingIncrementsOfThatDate() {
+        statsService.orderCreated(order(TODAY, null));
+        statsService.rebuild(TODAY);
+        statsService.flush();
+
+        verify(dailyBusinessStatsMapper).rebuild(eq(TODAY), any(), any());
+        verify(dailyBusinessStatsMapper, never()).increment(any(), anyInt(), anyInt(), anyInt(), any(), anyInt());
+    }
+
+    @Test
+    void rangeReadRebuildsMissingAndIncrementOnlyHistoricalDays() {
+        LocalDate begin = TODAY.minusDays(3);
+        DailyBusinessStats rebuilt = stats(TODAY.minusDays(3), TODAY.minusDays(2).atTime(0, 5));
+        DailyBusinessStats rebuiltTooEarly = stats(TODAY.minusDays(2), TODAY.minusDays(2).atTime(12, 0));
+        DailyBusinessStats incrementOnly = stats(TODAY.minusDays(1), null);
+        DailyBusinessStats today = stats(TODAY, null);
+        when(dailyBusinessStatsMapper.listByDateRange(begin, TODAY.plusDays(1)))
+                .thenReturn(Arrays.asList(rebuilt, rebuiltTooEarly, incrementOnly, today));
+
+        statsService.listByDateRange(begin, TODAY.plusDays(1));
+
+        verify(dailyBusinessStatsMapper, never()).rebuild(eq(TODAY.minusDays(3)), any(), any());
+        verify(dailyBusinessStatsMapper).rebuild(eq(TODAY.minusDays(2)), any(), any());
+        verify(dailyBusinessStatsMapper).rebuild(eq(TODAY.minusDays(1)), any(), any());
+        //当天的数据由增量维护，未来的日期没有数据
+        verify(dailyBusinessStatsMapper, never()).rebuild(eq(TODAY), any(), any());
+        verify(dailyBusinessStatsMapper, never()).rebuild(eq(TODAY.plusDays(1)), any(), any());
+        verify(dailyBusinessStatsMapper, times(2)).listByDateRange(begin, TODAY.plusDays(1));
+    }
+
+    @Test
+    void rangeReadRebuildsMissingToday() {
+        when(dailyBusinessStatsMapper.listByDateRange(TODAY, TODAY)).thenReturn(Collections.emptyList());
+
+        statsService.listByDateRange(TODAY, TODAY);
+
+        verify(dailyBusinessStatsMapper).rebuild(eq(TODAY), any(), any());
+    }
+
+    private Orders order(LocalDate date, BigDecimal amount) {
+        return Orders.builder().orderTime(date.atTime(12, 0)).amount(amount).build();
+    }
+
+    private DailyBusinessStats stats(LocalDate date, LocalDateTime rebuildTime) {
+        return DailyBusinessStats.builder().statDate(date).rebuildTime(rebuildTime).build();
+    }
+}
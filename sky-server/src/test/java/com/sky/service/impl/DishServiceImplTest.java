@@ -0,0 +1,140 @@
+package com.sky.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sky.cache.CatalogCache;
+import com.sky.cache.DishCache;
+import com.sky.constant.CacheConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.dto.DishDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.exception.DeletionNotAllowedException;
+import com.sky.vo.DishVO;
+
+/**
+ * 分类下菜品的口味一次批量查询，删除校验直接查询数据库
+ */
+@ExtendWith(MockitoExtension.class)
+class DishServiceImplTest {
+
+    @Mock
+    private DishMapper dishMapper;
+    @Mock
+    private DishFlavorMapper dishFlavorMapper;
+    @Mock
+    private SetmealDishMapper setmealDishMapper;
+    @Mock
+    private DishCache dishCache;
+    @Mock
+    private CatalogCache catalogCache;
+
+    private DishServiceImpl dishService;
+    private ConcurrentMapCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        //构造器注入的依赖与本测试无关
+        dishService = new DishServiceImpl(null, null);
+        ReflectionTestUtils.setField(dishService, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(dishService, "dishFlavorMapper", dishFlavorMapper);
+        ReflectionTestUtils.setField(dishService, "SetmealDishMapper", setmealDishMapper);
+        ReflectionTestUtils.setField(dishService, "dishCache", dishCache);
+        ReflectionTestUtils.setField(dishService, "catalogCache", catalogCache);
+        cacheManager = new ConcurrentMapCacheManager(CacheConstant.SETMEAL_CACHE, CacheConstant.SETMEAL_DISH_CACHE);
+        ReflectionTestUtils.setField(dishService, "cacheManager", cacheManager);
+    }
+
+    @Test
+    void listWithFlavorLoadsFlavorsInOneQuery() {
+        List<Dish> dishes = new ArrayList<>();
+        for (long id = 1; id <= 30; id++) {
+            dishes.add(Dish.builder().id(id).categoryId(11L).build());
+        }
+        when(dishMapper.list(any())).thenReturn(dishes);
+        when(dishFlavorMapper.getByDishIds(anyList())).thenReturn(Arrays.asList(
+                DishFlavor.builder().dishId(1L).name("辣度").build(),
+                DishFlavor.builder().dishId(1L).name("甜味").build(),
+                DishFlavor.builder().dishId(3L).name("忌口").build()));
+
+        List<DishVO> list = dishService.listWithFlavor(Dish.builder().categoryId(11L).build());
+
+        verify(dishFlavorMapper, times(1)).getByDishIds(anyList());
+        verify(dishFlavorMapper, never()).getByDishId(anyLong());
+        assertEquals(30, list.size());
+        assertEquals(2, list.get(0).getFlavors().size());
+        assertTrue(list.get(1).getFlavors().isEmpty());
+        assertEquals(1, list.get(2).getFlavors().size());
+    }
+
+    @Test
+    void emptyCategorySkipsFlavorQuery() {
+        when(dishMapper.list(any())).thenReturn(new ArrayList<>());
+
+        assertTrue(dishService.listWithFlavor(Dish.builder().categoryId(11L).build()).isEmpty());
+
+        verify(dishFlavorMapper, never()).getByDishIds(anyList());
+    }
+
+    @Test
+    void deleteBatchChecksStatusInDatabase() {
+        when(dishMapper.getById(1L)).thenReturn(Dish.builder().id(1L).status(StatusConstant.ENABLE).build());
+
+        assertThrows(DeletionNotAllowedException.class, () -> dishService.deleteBatch(Collections.singletonList(1L)));
+
+        verify(catalogCache, never()).getDish(anyLong());
+        verify(dishMapper, never()).deleteById(anyLong());
+    }
+
+    @Test
+    void updateEvictsSetmealsContainingDish() {
+        Cache setmealDishCache = cacheManager.getCache(CacheConstant.SETMEAL_DISH_CACHE);
+        Cache setmealCache = cacheManager.getCache(CacheConstant.SETMEAL_CACHE);
+        setmealDishCache.put(10L, "setmeal10");
+        setmealDishCache.put(20L, "setmeal20");
+        setmealDishCache.put(30L, "setmeal30");
+        setmealCache.put(11L, "category11");
+        when(setmealDishMapper.getSetmealIdsByDishIds(Collections.singletonList(1L))).thenReturn(Arrays.asList(10L, 30L));
+        DishDTO dishDTO = new DishDTO();
+        dishDTO.setId(1L);
+        dishDTO.setCategoryId(11L);
+
+        dishService.updateWithFlavor(dishDTO);
+
+        assertNull(setmealDishCache.get(10L));
+        assertNotNull(setmealDishCache.get(20L));
+        assertNull(setmealDishCache.get(30L));
+        //菜品信息不在套餐列表中，套餐列表缓存保留
+        assertNotNull(setmealCache.get(11L));
+        verify(dishCache).evict(11L);
+        verify(catalogCache).evictDishes(Collections.singletonList(1L));
+    }
+}
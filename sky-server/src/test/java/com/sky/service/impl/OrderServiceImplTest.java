@@ -0,0 +1,249 @@
+package com.sky.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.sky.cart.ShoppingCartStore;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersCancelDTO;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.AddressBook;
+import com.sky.entity.OrderEvent;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.OrderBusinessException;
+import com.sky.geo.DeliveryRangeChecker;
+import com.sky.mapper.AddressBookMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.outbox.OrderEventPublisher;
+import com.sky.result.PageResult;
+import com.sky.service.DailyBusinessStatsService;
+import com.sky.stock.StockLedger;
+import com.sky.utils.WeChatPayUtil;
+import com.sky.vo.OrderVO;
+
+/**
+ * 订单分页查询每页只查询一次订单明细；库存在订单事务外预占，取消订单按原状态更新后才归还库存；
+ * 管理端取消已支付订单不等待支付网关退款；订单取消后才收到的支付通知申请退款
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderServiceImplTest {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+    @Mock
+    private AddressBookMapper addressBookMapper;
+    @Mock
+    private DeliveryRangeChecker deliveryRangeChecker;
+    @Mock
+    private ShoppingCartStore shoppingCartStore;
+    @Mock
+    private OrderEventPublisher orderEventPublisher;
+    @Mock
+    private DailyBusinessStatsService dailyBusinessStatsService;
+    @Mock
+    private StockLedger stockLedger;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private WeChatPayUtil weChatPayUtil;
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    @AfterEach
+    void clearPage() {
+        PageHelper.clearPage();
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    void userPageLoadsDetailsInOneQuery() {
+        when(orderMapper.pageQuery(any())).thenReturn(page());
+        when(orderDetailMapper.getByOrderIds(anyList())).thenReturn(details());
+
+        PageResult result = orderService.pageQuery4User(1, PAGE_SIZE, null);
+
+        verify(orderDetailMapper, times(1)).getByOrderIds(anyList());
+        verify(orderDetailMapper, never()).getByOrderId(anyLong());
+        @SuppressWarnings("unchecked")
+        List<OrderVO> records = (List<OrderVO>) result.getRecords();
+        assertEquals(PAGE_SIZE, records.size());
+        assertEquals(2, records.get(0).getOrderDetailList().size());
+        assertEquals(0, records.get(1).getOrderDetailList().size());
+    }
+
+    @Test
+    void adminSearchLoadsDetailsInOneQuery() {
+        when(orderMapper.pageQuery(any())).thenReturn(page());
+        when(orderDetailMapper.getByOrderIds(anyList())).thenReturn(details());
+
+        OrdersPageQueryDTO dto = new OrdersPageQueryDTO();
+        dto.setPage(1);
+        dto.setPageSize(PAGE_SIZE);
+        PageResult result = orderService.conditionSearch(dto);
+
+        verify(orderDetailMapper, times(1)).getByOrderIds(anyList());
+        verify(orderDetailMapper, never()).getByOrderId(anyLong());
+        @SuppressWarnings("unchecked")
+        List<OrderVO> records = (List<OrderVO>) result.getRecords();
+        assertEquals("宫保鸡丁*2;米饭*1;", records.get(0).getOrderDishes());
+        assertEquals("", records.get(1).getOrderDishes());
+    }
+
+    @Test
+    void submitOrderReservesStockBeforeTransactionAndReturnsItOnFailure() {
+        ReflectionTestUtils.setField(orderService, "transactionTemplate", new TransactionTemplate(transactionManager));
+        BaseContext.setCurrentId(1L);
+        when(addressBookMapper.getById(1L)).thenReturn(AddressBook.builder()
+                .cityName("北京市").districtName("海淀区").detail("中关村").build());
+        when(shoppingCartStore.list(1L)).thenReturn(Collections.singletonList(
+                ShoppingCart.builder().dishId(10L).number(2).build()));
+        doThrow(new IllegalStateException("db down")).when(orderMapper).insert(any());
+
+        OrdersSubmitDTO dto = new OrdersSubmitDTO();
+        dto.setAddressBookId(1L);
+        dto.setPackAmount(1);
+        dto.setTablewareNumber(1);
+        assertThrows(IllegalStateException.class, () -> orderService.submitOrder(dto));
+
+        InOrder inOrder = inOrder(stockLedger, transactionManager, orderMapper);
+        inOrder.verify(stockLedger).reserve(Map.of(10L, 2));
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(orderMapper).insert(any());
+        inOrder.verify(transactionManager).rollback(any());
+        inOrder.verify(stockLedger).unreserve(Map.of(10L, 2));
+    }
+
+    @Test
+    void cancelLosingRaceDoesNotReleaseStock() {
+        when(orderMapper.getById(1L)).thenReturn(Orders.builder()
+                .id(1L).status(Orders.PENDING_PAYMENT).orderTime(LocalDateTime.now()).build());
+        //超时取消已先一步修改了订单状态
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.PENDING_PAYMENT), any())).thenReturn(0);
+
+        assertThrows(OrderBusinessException.class, () -> orderService.userCancelById(1L));
+        OrdersCancelDTO dto = new OrdersCancelDTO();
+        dto.setId(1L);
+        assertThrows(OrderBusinessException.class, () -> orderService.cancel(dto));
+
+        verify(stockLedger, never()).release(any(Orders.class));
+        verify(dailyBusinessStatsService, never()).orderCancelled(any());
+        verify(orderEventPublisher, never()).publish(any(), any());
+    }
+
+    @Test
+    void adminCancelDoesNotWaitForSlowRefundGateway() throws Exception {
+        //模拟很慢的支付网关，取消订单时不应调用
+        lenient().when(weChatPayUtil.refund(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(2000);
+            return "{}";
+        });
+        when(orderMapper.getById(1L)).thenReturn(Orders.builder()
+                .id(1L).number("1700000000001").status(Orders.TO_BE_CONFIRMED).payStatus(Orders.PAID)
+                .amount(new BigDecimal("10.00")).orderTime(LocalDateTime.now()).build());
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.TO_BE_CONFIRMED), any())).thenReturn(1);
+
+        OrdersCancelDTO dto = new OrdersCancelDTO();
+        dto.setId(1L);
+        dto.setCancelReason("菜品已售完");
+        long start = System.nanoTime();
+        orderService.cancel(dto);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        //退款随订单事件提交，由退款执行器在后台线程调用网关
+        assertTrue(elapsedMillis < 500, "取消订单耗时" + elapsedMillis + "ms");
+        verify(weChatPayUtil, never()).refund(anyString(), anyString(), any(), any());
+        verify(orderEventPublisher).publish(eq(OrderEvent.REFUND), any(Orders.class), anyMap());
+        verify(stockLedger).release(any(Orders.class));
+    }
+
+    @Test
+    void paymentAfterTimeoutCancelIsRefunded() {
+        //读取订单时仍待付款，修改前被超时取消
+        when(orderMapper.getByNumber("1700000000001")).thenReturn(Orders.builder()
+                .id(1L).number("1700000000001").status(Orders.PENDING_PAYMENT).payStatus(Orders.UN_PAID).build());
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.PENDING_PAYMENT), any())).thenReturn(0);
+        when(orderMapper.getById(1L)).thenReturn(Orders.builder()
+                .id(1L).number("1700000000001").status(Orders.CANCELLED).payStatus(Orders.UN_PAID)
+                .amount(new BigDecimal("10.00")).build());
+        when(orderMapper.updatePayStatus(eq(1L), eq(Orders.CANCELLED), eq(Orders.UN_PAID), eq(Orders.PAID), any())).thenReturn(1);
+
+        orderService.paySuccess("1700000000001");
+
+        verify(orderEventPublisher).publish(eq(OrderEvent.REFUND), any(Orders.class), anyMap());
+        verify(orderEventPublisher, never()).publish(eq(OrderEvent.PAID), any());
+        verify(stockLedger, never()).confirm(any());
+    }
+
+    @Test
+    void duplicatePaymentForPaidOrderIsIgnored() {
+        Orders paid = Orders.builder()
+                .id(1L).number("1700000000001").status(Orders.TO_BE_CONFIRMED).payStatus(Orders.PAID).build();
+        when(orderMapper.getByNumber("1700000000001")).thenReturn(paid);
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.PENDING_PAYMENT), any())).thenReturn(0);
+        when(orderMapper.getById(1L)).thenReturn(paid);
+
+        orderService.paySuccess("1700000000001");
+
+        verify(orderMapper, never()).updatePayStatus(anyLong(), any(), any(), any(), any());
+        verify(orderEventPublisher, never()).publish(any(), any(), anyMap());
+        verify(orderEventPublisher, never()).publish(any(), any());
+    }
+
+    private Page<Orders> page() {
+        Page<Orders> page = new Page<>(1, PAGE_SIZE);
+        for (long id = 1; id <= PAGE_SIZE; id++) {
+            page.add(Orders.builder().id(id).build());
+        }
+        page.setTotal(100);
+        return page;
+    }
+
+    private List<OrderDetail> details() {
+        List<OrderDetail> list = new ArrayList<>();
+        list.add(OrderDetail.builder().orderId(1L).name("宫保鸡丁").number(2).build());
+        list.add(OrderDetail.builder().orderId(1L).name("米饭").number(1).build());
+        return list;
+    }
+}
@@ -0,0 +1,89 @@
+package com.sky.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.sky.dto.DailyStatisticsDTO;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.vo.OrderReportVO;
+import com.sky.vo.TurnoverReportVO;
+import com.sky.vo.UserReportVO;
+
+/**
+ * 报表统计每个区间只查询一次数据库，没有数据的日期补0
+ */
+@ExtendWith(MockitoExtension.class)
+class ReportServiceImplTest {
+
+    private static final LocalDate BEGIN = LocalDate.of(2024, 1, 1);
+    private static final LocalDate END = LocalDate.of(2024, 1, 30);
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private UserMapper userMapper;
+    @InjectMocks
+    private ReportServiceImpl reportService;
+
+    @Test
+    void turnoverUsesOneGroupedQueryForThirtyDays() {
+        when(orderMapper.sumGroupByDay(any(), any())).thenReturn(Arrays.asList(
+                DailyStatisticsDTO.builder().date(BEGIN).count(2).validCount(1).amount(10.5).build(),
+                DailyStatisticsDTO.builder().date(END).count(1).validCount(1).amount(3.0).build()));
+
+        TurnoverReportVO vo = reportService.getTurnover(BEGIN, END);
+
+        verify(orderMapper, times(1)).sumGroupByDay(any(), any());
+        verify(orderMapper, never()).sumByMap(any());
+        String[] turnover = vo.getTurnoverList().split(",");
+        assertEquals(30, turnover.length);
+        assertEquals("10.5", turnover[0]);
+        assertEquals("0.0", turnover[1]);
+        assertEquals("3.0", turnover[29]);
+    }
+
+    @Test
+    void orderStatisticsUsesOneGroupedQuery() {
+        when(orderMapper.sumGroupByDay(any(), any())).thenReturn(Collections.singletonList(
+                DailyStatisticsDTO.builder().date(BEGIN.plusDays(3)).count(4).validCount(3).amount(20.0).build()));
+
+        OrderReportVO vo = reportService.getOrderStatistics(BEGIN, END);
+
+        verify(orderMapper, times(1)).sumGroupByDay(any(), any());
+        verify(orderMapper, never()).countByMap(any());
+        assertEquals(4, vo.getTotalOrderCount());
+        assertEquals(3, vo.getValidOrderCount());
+        assertEquals(0.75, vo.getOrderCompletionRate());
+    }
+
+    @Test
+    void userStatisticsUsesBaseCountPlusOneGroupedQuery() {
+        when(userMapper.countByMap(any())).thenReturn(100);
+        when(userMapper.countGroupByDay(any(), any())).thenReturn(Collections.singletonList(
+                DailyStatisticsDTO.builder().date(BEGIN.plusDays(1)).count(5).build()));
+
+        UserReportVO vo = reportService.getUserStatistics(BEGIN, END);
+
+        verify(userMapper, times(1)).countByMap(any());
+        verify(userMapper, times(1)).countGroupByDay(any(), any());
+        String[] total = vo.getTotalUserList().split(",");
+        assertEquals("100", total[0]);
+        assertEquals("105", total[1]);
+        assertEquals("105", total[29]);
+    }
+}
@@ -0,0 +1,164 @@
+package com.sky.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.sky.cache.CatalogCache;
+import com.sky.cache.MenuSnapshotCache;
+import com.sky.constant.CacheConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.dto.SetmealDTO;
+import com.sky.entity.Setmeal;
+import com.sky.entity.SetmealDish;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.mapper.SetmealMapper;
+
+/**
+ * 套餐变更只清理受影响分类和套餐的缓存，存在事务时在提交后清理
+ */
+@ExtendWith(MockitoExtension.class)
+class SetmealServiceImplTest {
+
+    @Mock
+    private SetmealMapper setmealMapper;
+    @Mock
+    private SetmealDishMapper setmealDishMapper;
+    @Mock
+    private DishMapper dishMapper;
+    @Mock
+    private MenuSnapshotCache menuSnapshotCache;
+    @Mock
+    private CatalogCache catalogCache;
+
+    private SetmealServiceImpl setmealService;
+    private Cache setmealCache;
+    private Cache setmealDishCache;
+
+    @BeforeEach
+    void setUp() {
+        //与RedisCacheManager.transactionAware()一样使用事务感知的缓存装饰
+        CacheManager cacheManager = new TransactionAwareCacheManagerProxy(
+                new ConcurrentMapCacheManager(CacheConstant.SETMEAL_CACHE, CacheConstant.SETMEAL_DISH_CACHE));
+        setmealCache = cacheManager.getCache(CacheConstant.SETMEAL_CACHE);
+        setmealDishCache = cacheManager.getCache(CacheConstant.SETMEAL_DISH_CACHE);
+        for (long id = 1; id <= 3; id++) {
+            setmealCache.put(id, "category" + id);
+            setmealDishCache.put(id * 10, "setmeal" + id * 10);
+        }
+
+        setmealService = new SetmealServiceImpl();
+        ReflectionTestUtils.setField(setmealService, "setmealMapper", setmealMapper);
+        ReflectionTestUtils.setField(setmealService, "setmealDishMapper", setmealDishMapper);
+        ReflectionTestUtils.setField(setmealService, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(setmealService, "menuSnapshotCache", menuSnapshotCache);
+        ReflectionTestUtils.setField(setmealService, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(setmealService, "catalogCache", catalogCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void saveEvictsOnlyItsCategory() {
+        setmealService.saveWithDish(setmealDTO(null, 1L));
+
+        assertNull(setmealCache.get(1L));
+        assertNotNull(setmealCache.get(2L));
+        assertNotNull(setmealCache.get(3L));
+        assertNotNull(setmealDishCache.get(10L));
+        verify(menuSnapshotCache).evict(MenuSnapshotCache.SETMEAL);
+    }
+
+    @Test
+    void updateEvictsOldAndNewCategory() {
+        when(setmealMapper.getById(10L)).thenReturn(Setmeal.builder().id(10L).categoryId(1L).build());
+
+        setmealService.update(setmealDTO(10L, 2L));
+
+        assertNull(setmealCache.get(1L));
+        assertNull(setmealCache.get(2L));
+        assertNotNull(setmealCache.get(3L));
+        assertNull(setmealDishCache.get(10L));
+        assertNotNull(setmealDishCache.get(20L));
+        verify(catalogCache).evictSetmeals(Collections.singletonList(10L));
+    }
+
+    @Test
+    void startOrStopEvictsCurrentCategoryAndSetmeal() {
+        when(setmealMapper.getById(20L)).thenReturn(Setmeal.builder().id(20L).categoryId(2L).build());
+
+        setmealService.startOrStop(StatusConstant.DISABLE, 20L);
+
+        assertNotNull(setmealCache.get(1L));
+        assertNull(setmealCache.get(2L));
+        assertNull(setmealDishCache.get(20L));
+        assertNotNull(setmealDishCache.get(30L));
+    }
+
+    @Test
+    void deleteBatchEvictsCategoriesOfDeletedSetmeals() {
+        when(setmealMapper.getById(10L)).thenReturn(Setmeal.builder().id(10L).categoryId(1L).status(StatusConstant.DISABLE).build());
+        when(setmealMapper.getById(30L)).thenReturn(Setmeal.builder().id(30L).categoryId(3L).status(StatusConstant.DISABLE).build());
+
+        setmealService.deleteBatch(Arrays.asList(10L, 30L));
+
+        assertNull(setmealCache.get(1L));
+        assertNotNull(setmealCache.get(2L));
+        assertNull(setmealCache.get(3L));
+        assertNull(setmealDishCache.get(10L));
+        assertNotNull(setmealDishCache.get(20L));
+        assertNull(setmealDishCache.get(30L));
+    }
+
+    @Test
+    void evictionWaitsForCommit() {
+        when(setmealMapper.getById(10L)).thenReturn(Setmeal.builder().id(10L).categoryId(1L).build());
+        TransactionSynchronizationManager.initSynchronization();
+
+        setmealService.update(setmealDTO(10L, 1L));
+
+        //事务提交前其他请求读到的仍是旧数据，不会把未提交的数据写回缓存
+        assertNotNull(setmealCache.get(1L));
+        assertNotNull(setmealDishCache.get(10L));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertNull(setmealCache.get(1L));
+        assertNull(setmealDishCache.get(10L));
+        assertNotNull(setmealCache.get(2L));
+    }
+
+    private SetmealDTO setmealDTO(Long id, Long categoryId) {
+        SetmealDTO setmealDTO = new SetmealDTO();
+        setmealDTO.setId(id);
+        setmealDTO.setCategoryId(categoryId);
+        setmealDTO.setSetmealDishes(Arrays.asList(SetmealDish.builder().dishId(1L).copies(1).build()));
+        return setmealDTO;
+    }
+}
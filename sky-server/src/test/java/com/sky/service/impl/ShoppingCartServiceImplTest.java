@@ -0,0 +1,96 @@
+package com.sky.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sky.cache.CatalogCache;
+import com.sky.cart.MysqlShoppingCartStore;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+
+/**
+ * 加购只执行一条upsert语句，菜品和套餐信息从缓存中读取
+ */
+@ExtendWith(MockitoExtension.class)
+class ShoppingCartServiceImplTest {
+
+    @Mock
+    private CatalogCache catalogCache;
+    @Mock
+    private ShoppingCartMapper shoppingCartMapper;
+
+    private ShoppingCartServiceImpl shoppingCartService;
+
+    @BeforeEach
+    void setUp() {
+        MysqlShoppingCartStore store = new MysqlShoppingCartStore();
+        ReflectionTestUtils.setField(store, "shoppingCartMapper", shoppingCartMapper);
+        shoppingCartService = new ShoppingCartServiceImpl();
+        ReflectionTestUtils.setField(shoppingCartService, "catalogCache", catalogCache);
+        ReflectionTestUtils.setField(shoppingCartService, "shoppingCartStore", store);
+        BaseContext.setCurrentId(7L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    void addDishIsOneUpsertWithCachedDetails() {
+        when(catalogCache.getDish(1L)).thenReturn(Dish.builder()
+                .id(1L).name("宫保鸡丁").image("a.png").price(new BigDecimal("28")).build());
+        ShoppingCartDTO dto = new ShoppingCartDTO();
+        dto.setDishId(1L);
+        dto.setDishFlavor("微辣");
+
+        shoppingCartService.addShoppingCart(dto);
+
+        ArgumentCaptor<ShoppingCart> captor = ArgumentCaptor.forClass(ShoppingCart.class);
+        verify(shoppingCartMapper, times(1)).insertOrIncrement(captor.capture());
+        verify(shoppingCartMapper, never()).list(any());
+        ShoppingCart row = captor.getValue();
+        assertEquals(7L, row.getUserId());
+        assertEquals(1, row.getNumber());
+        assertEquals("宫保鸡丁", row.getName());
+        assertEquals("微辣", row.getDishFlavor());
+        assertEquals(new BigDecimal("28"), row.getAmount());
+        assertNull(row.getSetmealId());
+    }
+
+    @Test
+    void addSetmealReadsSetmealFromCache() {
+        when(catalogCache.getSetmeal(2L)).thenReturn(Setmeal.builder()
+                .id(2L).name("商务套餐").price(new BigDecimal("58")).build());
+        ShoppingCartDTO dto = new ShoppingCartDTO();
+        dto.setSetmealId(2L);
+
+        shoppingCartService.addShoppingCart(dto);
+
+        ArgumentCaptor<ShoppingCart> captor = ArgumentCaptor.forClass(ShoppingCart.class);
+        verify(shoppingCartMapper).insertOrIncrement(captor.capture());
+        verify(catalogCache, never()).getDish(any());
+        assertEquals("商务套餐", captor.getValue().getName());
+        assertEquals(2L, captor.getValue().getSetmealId());
+    }
+}
@@ -0,0 +1,163 @@
+package com.sky.stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.sky.entity.DishStock;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.DishStockMapper;
+import com.sky.mapper.OrderDetailMapper;
+
+/**
+ * 并发预占不超卖，取消订单只在事务提交后归还库存
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StockLedgerTest {
+
+    private static final Long DISH_ID = 1L;
+
+    @Mock
+    private DishStockMapper dishStockMapper;
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @InjectMocks
+    private StockLedger stockLedger;
+
+    //模拟dish_stock表：allocated + number <= total 时才分配
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(stockLedger, "leaseSize", 20);
+        ReflectionTestUtils.setField(stockLedger, "unlimitedRecheck", Duration.ofMinutes(1));
+        stockLedger.init();
+        when(dishStockMapper.getByDishIdAndDate(eq(DISH_ID), any(LocalDate.class)))
+                .thenReturn(DishStock.builder().dishId(DISH_ID).total(100).build());
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        stockTotal(100);
+        int threads = 64;
+        int attempts = 5;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < attempts; j++) {
+                    try {
+                        stockLedger.reserve(Map.of(DISH_ID, 1));
+                        succeeded.incrementAndGet();
+                    } catch (OrderBusinessException e) {
+                        //库存不足
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(100, succeeded.get());
+        assertEquals(100, allocated.get());
+    }
+
+    @Test
+    void rolledBackCancelDoesNotReturnStock() {
+        stockTotal(1);
+        stockLedger.reserve(Map.of(DISH_ID, 1));
+
+        TransactionSynchronizationManager.initSynchronization();
+        stockLedger.release(cancelledOrder());
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThrows(OrderBusinessException.class, () -> stockLedger.reserve(Map.of(DISH_ID, 1)));
+    }
+
+    @Test
+    void committedCancelReturnsStock() {
+        stockTotal(1);
+        stockLedger.reserve(Map.of(DISH_ID, 1));
+
+        TransactionSynchronizationManager.initSynchronization();
+        stockLedger.release(cancelledOrder());
+        assertThrows(OrderBusinessException.class, () -> stockLedger.reserve(Map.of(DISH_ID, 1)));
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        stockLedger.reserve(Map.of(DISH_ID, 1));
+    }
+
+    private void stockTotal(int total) {
+        when(dishStockMapper.allocate(eq(DISH_ID), any(LocalDate.class), anyInt())).thenAnswer(invocation -> {
+            int number = invocation.getArgument(2);
+            while (true) {
+                int current = allocated.get();
+                if (current + number > total) {
+                    return 0;
+                }
+                if (allocated.compareAndSet(current, current + number)) {
+                    return 1;
+                }
+            }
+        });
+    }
+
+    private Orders cancelledOrder() {
+        when(orderDetailMapper.getByOrderIds(anyList())).thenReturn(Collections.singletonList(
+                OrderDetail.builder().orderId(1L).dishId(DISH_ID).number(1).build()));
+        return Orders.builder().id(1L).status(Orders.PENDING_PAYMENT).orderTime(LocalDateTime.now()).build();
+    }
+}
@@ -0,0 +1,140 @@
+package com.sky.task;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.DailyBusinessStatsService;
+import com.sky.stock.StockLedger;
+
+/**
+ * 定时任务按批次修改订单状态，每批只修改仍处于原状态的订单并单独累加汇总数据
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderTaskTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private DailyBusinessStatsService dailyBusinessStatsService;
+    @Mock
+    private TaskLease taskLease;
+    @Mock
+    private StockLedger stockLedger;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OrderTask orderTask;
+
+    @BeforeEach
+    void setUp() {
+        //构造器注入的依赖与本测试无关
+        orderTask = new OrderTask(null, null);
+        ReflectionTestUtils.setField(orderTask, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(orderTask, "dailyBusinessStatsService", dailyBusinessStatsService);
+        ReflectionTestUtils.setField(orderTask, "taskLease", taskLease);
+        ReflectionTestUtils.setField(orderTask, "stockLedger", stockLedger);
+        ReflectionTestUtils.setField(orderTask, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(orderTask, "batchSize", 2);
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(3).run();
+            return true;
+        }).when(taskLease).runExclusively(any(), any(), any(), any());
+    }
+
+    @Test
+    void timeoutOrdersAreCancelledInBatchesUntilShortBatch() {
+        List<Orders> first = orders(1L, 2L);
+        List<Orders> second = orders(3L, 4L);
+        List<Orders> third = orders(5L);
+        when(orderMapper.getByStatusAndOrdertimeLTForUpdate(eq(Orders.PENDING_PAYMENT), any(), eq(2)))
+                .thenReturn(first, second, third);
+
+        orderTask.executeTask();
+
+        //最后一批不足batchSize时不再查询
+        verify(orderMapper, times(3)).getByStatusAndOrdertimeLTForUpdate(eq(Orders.PENDING_PAYMENT), any(), eq(2));
+        verify(transactionManager, times(3)).commit(any());
+
+        //每批只修改仍处于待付款状态的订单
+        ArgumentCaptor<Orders> target = ArgumentCaptor.forClass(Orders.class);
+        InOrder inOrder = inOrder(orderMapper, dailyBusinessStatsService, stockLedger);
+        for (List<Orders> batch : Arrays.asList(first, second, third)) {
+            inOrder.verify(orderMapper).updateStatusByIds(eq(ids(batch)), eq(Orders.PENDING_PAYMENT), target.capture());
+            inOrder.verify(dailyBusinessStatsService).ordersCancelled(batch);
+            inOrder.verify(stockLedger).release(batch);
+        }
+        target.getAllValues().forEach(orders -> assertEquals(Orders.CANCELLED, orders.getStatus()));
+    }
+
+    @Test
+    void fullLastBatchStopsOnEmptyQuery() {
+        List<Orders> first = orders(1L, 2L);
+        List<Orders> second = orders(3L, 4L);
+        when(orderMapper.getByStatusAndOrdertimeLTForUpdate(eq(Orders.DELIVERY_IN_PROGRESS), any(), eq(2)))
+                .thenReturn(first, second, new ArrayList<>());
+
+        orderTask.processDeliveryOrder();
+
+        verify(orderMapper, times(3)).getByStatusAndOrdertimeLTForUpdate(eq(Orders.DELIVERY_IN_PROGRESS), any(), eq(2));
+        verify(orderMapper).updateStatusByIds(eq(ids(first)), eq(Orders.DELIVERY_IN_PROGRESS), any());
+        verify(orderMapper).updateStatusByIds(eq(ids(second)), eq(Orders.DELIVERY_IN_PROGRESS), any());
+        verify(dailyBusinessStatsService).ordersCompleted(first);
+        verify(dailyBusinessStatsService).ordersCompleted(second);
+        verify(dailyBusinessStatsService, times(2)).ordersCompleted(anyList());
+    }
+
+    @Test
+    void queryUsesStatusAndOrderTimeCutoff() {
+        when(orderMapper.getByStatusAndOrdertimeLTForUpdate(eq(Orders.PENDING_PAYMENT), any(), eq(2)))
+                .thenReturn(Collections.emptyList());
+
+        LocalDateTime before = LocalDateTime.now().minusMinutes(15);
+        orderTask.executeTask();
+
+        ArgumentCaptor<LocalDateTime> orderTime = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(orderMapper).getByStatusAndOrdertimeLTForUpdate(eq(Orders.PENDING_PAYMENT), orderTime.capture(), eq(2));
+        //只处理下单超过15分钟的订单
+        assertEquals(0, Math.abs(Duration.between(before, orderTime.getValue()).getSeconds()));
+        verify(orderMapper, never()).updateStatusByIds(anyList(), any(), any());
+        verify(dailyBusinessStatsService, never()).ordersCancelled(anyList());
+    }
+
+    private List<Orders> orders(Long... ids) {
+        return Arrays.stream(ids)
+                .map(id -> Orders.builder().id(id).orderTime(LocalDateTime.now().minusHours(2)).build())
+                .collect(Collectors.toList());
+    }
+
+    private List<Long> ids(List<Orders> ordersList) {
+        return ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,85 @@
+package com.sky.task;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.DailyBusinessStatsService;
+import com.sky.stock.StockLedger;
+
+/**
+ * 支付超时订单取消失败时重新放回延迟队列
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentTimeoutQueueTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private DailyBusinessStatsService dailyBusinessStatsService;
+    @Mock
+    private StockLedger stockLedger;
+    @InjectMocks
+    private PaymentTimeoutQueue paymentTimeoutQueue;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(paymentTimeoutQueue, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(zSetOperations.rangeByScore(eq(PaymentTimeoutQueue.QUEUE_KEY), anyDouble(), anyDouble(), anyLong(), anyLong()))
+                .thenReturn(Collections.singleton("1"));
+        when(zSetOperations.remove(PaymentTimeoutQueue.QUEUE_KEY, "1")).thenReturn(1L);
+        when(orderMapper.getById(1L)).thenReturn(Orders.builder()
+                .id(1L).status(Orders.PENDING_PAYMENT).orderTime(LocalDateTime.now().minusMinutes(20)).build());
+    }
+
+    @Test
+    void cancelsDueOrderAndKeepsItRemoved() {
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.PENDING_PAYMENT), any())).thenReturn(1);
+
+        paymentTimeoutQueue.poll();
+
+        verify(stockLedger).release(any(Orders.class));
+        verify(zSetOperations, never()).add(any(), any(), anyDouble());
+    }
+
+    @Test
+    void requeuesOrderWhenCancelFails() {
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.PENDING_PAYMENT), any())).thenReturn(1);
+        doThrow(new IllegalStateException("db down")).when(dailyBusinessStatsService).orderCancelled(any());
+
+        paymentTimeoutQueue.poll();
+
+        verify(zSetOperations).add(eq(PaymentTimeoutQueue.QUEUE_KEY), eq("1"), anyDouble());
+        verify(stockLedger, never()).release(any(Orders.class));
+    }
+}
@@ -0,0 +1,100 @@
+package com.sky.task;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 两个节点竞争同一任务租约时只有一个节点执行
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TaskLeaseTest {
+
+    //模拟Redis中的租约
+    private final Map<String, String> leases = new ConcurrentHashMap<>();
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private TaskLease nodeA;
+    private TaskLease nodeB;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> leases.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        //释放和缩短脚本都按持有者比较，这里统一视为删除
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any()))
+                .thenAnswer(invocation -> {
+                    List<String> keys = invocation.getArgument(1);
+                    String value = invocation.getArgument(2);
+                    return leases.remove(keys.get(0), value) ? 1L : 0L;
+                });
+        nodeA = newNode();
+        nodeB = newNode();
+    }
+
+    @Test
+    void onlyOneNodeRunsWhileLeaseIsHeld() {
+        AtomicInteger runs = new AtomicInteger();
+        boolean[] innerRan = new boolean[1];
+
+        boolean ran = nodeA.runExclusively("job", Duration.ofMinutes(1), Duration.ZERO, () -> {
+            runs.incrementAndGet();
+            innerRan[0] = nodeB.runExclusively("job", Duration.ofMinutes(1), Duration.ZERO, runs::incrementAndGet);
+        });
+
+        assertTrue(ran);
+        assertFalse(innerRan[0]);
+        assertEquals(1, runs.get());
+        //释放后其他节点可以获取
+        assertTrue(nodeB.runExclusively("job", Duration.ofMinutes(1), Duration.ZERO, runs::incrementAndGet));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void doesNotReleaseLeaseTakenOverByAnotherNode() {
+        nodeA.runExclusively("job", Duration.ofMinutes(1), Duration.ZERO, () -> {
+            //模拟租约过期后被其他节点获取
+            leases.put("sky:lease:job", "other");
+        });
+
+        assertEquals("other", leases.get("sky:lease:job"));
+    }
+
+    private TaskLease newNode() {
+        TaskLease lease = new TaskLease();
+        ReflectionTestUtils.setField(lease, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(lease, "meterRegistry", new SimpleMeterRegistry());
+        return lease;
+    }
+}
@@ -0,0 +1,105 @@
+package com.sky.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+/**
+ * 会话发送通道同一时刻只有一条消息在发送中，慢客户端不会阻塞调用方
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SessionChannelTest {
+
+    @Mock
+    private Session session;
+    @Mock
+    private RemoteEndpoint.Async async;
+
+    @BeforeEach
+    void setUp() {
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAsyncRemote()).thenReturn(async);
+    }
+
+    @Test
+    void sendsOneMessageAtATimeInOrder() {
+        SessionChannel channel = new SessionChannel("1", session, 10);
+
+        assertTrue(channel.offer("a"));
+        assertTrue(channel.offer("b"));
+        assertTrue(channel.offer("c"));
+
+        //上一条发送完成前不会发送下一条
+        ArgumentCaptor<SendHandler> handler = ArgumentCaptor.forClass(SendHandler.class);
+        verify(async, times(1)).sendText(anyString(), handler.capture());
+
+        handler.getValue().onResult(new SendResult());
+        handler.getValue().onResult(new SendResult());
+
+        InOrder inOrder = Mockito.inOrder(async);
+        inOrder.verify(async).sendText("a", channel);
+        inOrder.verify(async).sendText("b", channel);
+        inOrder.verify(async).sendText("c", channel);
+    }
+
+    @Test
+    void rejectsWhenQueueIsFullAndMergesPendingDuplicates() {
+        SessionChannel channel = new SessionChannel("1", session, 2);
+
+        //第一条进入发送中，之后两条占满队列
+        assertTrue(channel.offer("a"));
+        assertTrue(channel.offer("b"));
+        assertTrue(channel.offer("c"));
+        //与队列中未发送的消息相同，直接合并
+        assertTrue(channel.offer("b"));
+        assertFalse(channel.offer("d"));
+
+        verify(async, times(1)).sendText(any(), any(SendHandler.class));
+    }
+
+    @Test
+    void reportsStalledSendAfterTimeout() throws InterruptedException {
+        SessionChannel channel = new SessionChannel("1", session, 10);
+        assertFalse(channel.isStalled(0));
+
+        channel.offer("a");
+        Thread.sleep(5);
+        assertTrue(channel.isStalled(1));
+
+        channel.onResult(new SendResult());
+        assertFalse(channel.isStalled(1));
+    }
+
+    @Test
+    void dropsQueuedMessagesOnceSessionIsClosed() {
+        when(session.isOpen()).thenReturn(false);
+        SessionChannel channel = new SessionChannel("1", session, 10);
+
+        channel.offer("a");
+
+        verify(async, never()).sendText(any(), any(SendHandler.class));
+        assertFalse(channel.isStalled(0));
+    }
+}
@@ -0,0 +1,109 @@
+package com.sky.websocket;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.alibaba.fastjson.JSON;
+
+/**
+ * 按消息id去重，同一订单的消息按序号推送，缺失的消息等待超时后跳过，晚到的消息照常推送
+ */
+@ExtendWith(MockitoExtension.class)
+class WebSocketBroadcasterTest {
+
+    @Mock
+    private WebSocketServer webSocketServer;
+    @InjectMocks
+    private WebSocketBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(broadcaster, "reorderWait", Duration.ofMillis(200));
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.destroy();
+    }
+
+    @Test
+    void redeliveredEventIsPushedOnce() {
+        //订单事件重新投递时消息id相同，但广播时分配了新的序号
+        receive("order-event-5", 1L, 1L, "来单提醒");
+        receive("order-event-5", 1L, 2L, "来单提醒");
+        receive("order-event-6", 1L, 3L, "催单");
+
+        InOrder inOrder = inOrder(webSocketServer);
+        inOrder.verify(webSocketServer).sendToAllClient("来单提醒");
+        inOrder.verify(webSocketServer).sendToAllClient("催单");
+        verify(webSocketServer, times(1)).sendToAllClient("来单提醒");
+    }
+
+    @Test
+    void sameSeqWithDifferentIdIsNotDuplicate() {
+        receive("a", 1L, 1L, "first");
+        receive("b", 1L, 1L, "second");
+
+        verify(webSocketServer).sendToAllClient("first");
+        verify(webSocketServer).sendToAllClient("second");
+    }
+
+    @Test
+    void outOfOrderMessagesAreReordered() {
+        receive("a", 1L, 1L, "first");
+        receive("c", 1L, 3L, "third");
+        verify(webSocketServer, never()).sendToAllClient("third");
+        receive("b", 1L, 2L, "second");
+
+        InOrder inOrder = inOrder(webSocketServer);
+        inOrder.verify(webSocketServer).sendToAllClient("first");
+        inOrder.verify(webSocketServer).sendToAllClient("second");
+        inOrder.verify(webSocketServer).sendToAllClient("third");
+    }
+
+    @Test
+    void missingMessageIsSkippedAfterWaitAndDeliveredWhenLate() {
+        receive("a", 1L, 1L, "first");
+        receive("c", 1L, 3L, "third");
+        receive("d", 1L, 4L, "fourth");
+
+        InOrder inOrder = inOrder(webSocketServer);
+        inOrder.verify(webSocketServer).sendToAllClient("first");
+        inOrder.verify(webSocketServer, timeout(2000)).sendToAllClient("third");
+        inOrder.verify(webSocketServer).sendToAllClient("fourth");
+
+        receive("b", 1L, 2L, "second");
+        verify(webSocketServer).sendToAllClient("second");
+    }
+
+    @Test
+    void messagesWithoutOrderAreDedupedById() {
+        receive("x", null, null, "营业状态");
+        receive("x", null, null, "营业状态");
+
+        verify(webSocketServer, times(1)).sendToAllClient("营业状态");
+    }
+
+    private void receive(String id, Long orderId, Long seq, String content) {
+        BroadcastMessage message = BroadcastMessage.builder().id(id).node("other").orderId(orderId).seq(seq).content(content).build();
+        byte[] body = JSON.toJSONString(message).getBytes(StandardCharsets.UTF_8);
+        broadcaster.onMessage(new DefaultMessage(WebSocketBroadcaster.CHANNEL.getBytes(StandardCharsets.UTF_8), body), null);
+    }
+}
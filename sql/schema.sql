@@ -0,0 +1,95 @@
+-- 在原有 sky_take_out 库基础上新增的表结构
+
+create table if not exists daily_business_stats (
+    stat_date             date           not null primary key comment '统计日期',
+    order_count           int            not null default 0 comment '订单总数',
+    valid_order_count     int            not null default 0 comment '有效订单数',
+    cancelled_order_count int            not null default 0 comment '已取消订单数',
+    turnover              decimal(12, 2) not null default 0 comment '营业额',
+    new_users             int            not null default 0 comment '新增用户数',
+    update_time           datetime       null comment '更新时间',
+    rebuild_time          datetime       null comment '最近一次根据原始数据重建的时间'
+) comment '每日营业数据汇总';
+
+create table if not exists dish_stock (
+    dish_id     bigint   not null comment '菜品id',
+    stock_date  date     not null comment '库存日期',
+    total       int      not null comment '当日总库存',
+    allocated   int      not null default 0 comment '已分配给各服务节点的库存',
+    sold        int      not null default 0 comment '已支付份数',
+    update_time datetime null comment '更新时间',
+    primary key (dish_id, stock_date)
+) comment '菜品每日库存';
+
+create table if not exists pay_notify (
+    id             bigint      not null auto_increment,
+    transaction_id varchar(64) not null comment '微信支付交易号',
+    out_trade_no   varchar(50) not null comment '商户平台订单号',
+    status         tinyint     not null default 0 comment '处理状态 0待处理 1已处理',
+    attempts       int         not null default 0 comment '处理失败的次数',
+    create_time    datetime    not null comment '收到通知的时间',
+    process_time   datetime    null comment '处理完成的时间',
+    primary key (id),
+    unique key uk_transaction_id (transaction_id),
+    key idx_status_create_time (status, create_time)
+) comment '支付成功通知';
+
+create table if not exists order_event (
+    id              bigint        not null auto_increment,
+    order_id        bigint        not null comment '订单id',
+    order_number    varchar(50)   null comment '订单号',
+    type            varchar(32)   not null comment '事件类型',
+    payload         varchar(1024) null comment '事件附加数据',
+    status          tinyint       not null default 0 comment '投递状态 0待投递 1已投递 2投递失败',
+    attempts        int           not null default 0 comment '投递失败的次数',
+    next_retry_time datetime      not null comment '下次投递的时间',
+    create_time     datetime      not null comment '创建时间',
+    publish_time    datetime      null comment '投递完成的时间',
+    primary key (id),
+    key idx_status_id (status, id),
+    key idx_order_id_status (order_id, status)
+) comment '订单事件';
+
+create table if not exists order_refund (
+    id              bigint        not null auto_increment,
+    order_id        bigint        not null comment '订单id',
+    order_number    varchar(50)   not null comment '订单号',
+    out_refund_no   varchar(64)   not null comment '商户退款单号',
+    amount          decimal(10,2) null comment '订单金额',
+    status          tinyint       not null default 0 comment '退款状态 0待申请 1已受理 2申请失败',
+    attempts        int           not null default 0 comment '申请失败的次数',
+    next_retry_time datetime      not null comment '下次申请的时间',
+    last_error      varchar(500)  null comment '最近一次失败的原因',
+    refund_id       varchar(64)   null comment '微信支付退款单号',
+    create_time     datetime      not null comment '创建时间',
+    update_time     datetime      null comment '更新时间',
+    primary key (id),
+    unique key uk_out_refund_no (out_refund_no),
+    key idx_order_id (order_id),
+    key idx_status_next_retry_time (status, next_retry_time)
+) comment '退款申请';
+
+-- 购物车：同一用户的同一商品（菜品+口味或套餐）只保留一行，insertOrIncrement依赖该唯一索引累加数量
+-- dish_id、setmeal_id、dish_flavor可能为null，使用函数索引（MySQL 8.0.13+）；以下语句只需执行一次
+-- 先合并已有的重复行：数量累加到id最小的行，再删除其余行，否则无法创建唯一索引
+update shopping_cart c
+    join (select min(id) as keep_id, sum(number) as total
+          from shopping_cart
+          group by user_id, ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, '')
+          having count(*) > 1) g on c.id = g.keep_id
+set c.number = g.total;
+
+delete c from shopping_cart c
+    join (select user_id, ifnull(dish_id, 0) as dish_id, ifnull(setmeal_id, 0) as setmeal_id,
+                 ifnull(dish_flavor, '') as dish_flavor, min(id) as keep_id
+          from shopping_cart
+          group by user_id, ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, '')
+          having count(*) > 1) g
+      on c.user_id = g.user_id
+     and ifnull(c.dish_id, 0) = g.dish_id
+     and ifnull(c.setmeal_id, 0) = g.setmeal_id
+     and ifnull(c.dish_flavor, '') = g.dish_flavor
+     and c.id <> g.keep_id;
+
+alter table shopping_cart
+    add unique key uk_user_item (user_id, (ifnull(dish_id, 0)), (ifnull(setmeal_id, 0)), (ifnull(dish_flavor, '')));